@@ -0,0 +1,268 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Shortcuts for raw <code>double[]</code>, so consumers don't have to round-trip through <code>Double[]</code>.
+ * Range arguments follow {@link Arrays}: <code>from</code> is inclusive, <code>to</code> is exclusive.
+ * Sorted operations expect ascending order, as produced by {@link Arrays#sort(double[])}.
+ * Values are compared as {@link Double#equals(Object)} does.
+ */
+public class DoubleArrays {
+  private DoubleArrays() {
+    // utility class with no public constructor
+  }
+
+  /**
+   * Primitive analog of Guava's Predicate, to filter without boxing.
+   */
+  public static interface Filter {
+    boolean apply(double value);
+  }
+
+  public static boolean contains(@Nullable double[] arr, double search) {
+    return indexOf(arr, search) >= 0;
+  }
+
+  public static boolean contains(@Nonnull double[] arr, int from, int to, double search) {
+    return indexOf(arr, from, to, search) >= 0;
+  }
+
+  public static int indexOf(@Nullable double[] arr, double search) {
+    if (arr == null || arr.length == 0) {
+      return -1;
+    }
+
+    return indexOf(arr, 0, arr.length, search);
+  }
+
+  public static int indexOf(@Nonnull double[] arr, int from, int to, double search) {
+    for (int i = from; i < to; i++) {
+      if (equal(arr[i], search)) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * @return the same array if nothing is removed, a shorter copy otherwise
+   */
+  @Nullable
+  public static double[] remove(@Nullable double[] arr, double search) {
+    if (arr == null || arr.length == 0) {
+      return arr;
+    }
+
+    return remove(arr, 0, arr.length, search);
+  }
+
+  /**
+   * Removes occurences within the range only, the values outside of it are kept.
+   *
+   * @return the same array if nothing is removed, a shorter copy otherwise
+   */
+  @Nonnull
+  public static double[] remove(@Nonnull double[] arr, int from, int to, double search) {
+    int occurences = 0;
+    for (int i = from; i < to; i++) {
+      if (equal(arr[i], search)) {
+        occurences += 1;
+      }
+    }
+
+    if (occurences == 0) {
+      return arr;
+    }
+
+    final double[] result = new double[arr.length - occurences];
+    System.arraycopy(arr, 0, result, 0, from);
+    int resultPos = from;
+    for (int i = from; i < to; i++) {
+      if (equal(arr[i], search)) {
+        continue;
+      }
+      result[resultPos] = arr[i];
+      resultPos++;
+    }
+    System.arraycopy(arr, to, result, resultPos, arr.length - to);
+
+    return result;
+  }
+
+  /**
+   * @return index of the search within the sorted range, or <code>-(insertion point) - 1</code>
+   */
+  public static int binarySearch(@Nonnull double[] sorted, int from, int to, double search) {
+    return Arrays.binarySearch(sorted, from, to, search);
+  }
+
+  public static boolean sortedContains(@Nullable double[] sorted, double search) {
+    return sorted != null && Arrays.binarySearch(sorted, search) >= 0;
+  }
+
+  public static boolean sortedContains(@Nonnull double[] sorted, int from, int to, double search) {
+    return Arrays.binarySearch(sorted, from, to, search) >= 0;
+  }
+
+  /**
+   * Moves distinct values of the sorted range to its start, in place.
+   *
+   * @return new exclusive end of the range
+   */
+  public static int dedup(@Nonnull double[] sorted, int from, int to) {
+    if (to - from < 2) {
+      return to;
+    }
+
+    int end = from + 1;
+    for (int i = from + 1; i < to; i++) {
+      if (!equal(sorted[i], sorted[end - 1])) {
+        sorted[end] = sorted[i];
+        end++;
+      }
+    }
+
+    return end;
+  }
+
+  /**
+   * @return the same array if it has no duplicates, a shorter deduplicated copy otherwise
+   */
+  @Nullable
+  public static double[] dedup(@Nullable double[] sorted) {
+    if (sorted == null || sorted.length < 2) {
+      return sorted;
+    }
+
+    for (int i = 1; i < sorted.length; i++) {
+      if (equal(sorted[i], sorted[i - 1])) {
+        final double[] result = sorted.clone();
+        return Arrays.copyOf(result, dedup(result, i - 1, result.length));
+      }
+    }
+
+    return sorted;
+  }
+
+  @Nonnull
+  public static double[] union(@Nonnull double[] sortedA, @Nonnull double[] sortedB) {
+    return union(sortedA, 0, sortedA.length, sortedB, 0, sortedB.length);
+  }
+
+  /**
+   * Merges two sorted ranges, values present in both are emitted once.
+   */
+  @Nonnull
+  public static double[] union(
+      @Nonnull double[] sortedA, int fromA, int toA,
+      @Nonnull double[] sortedB, int fromB, int toB
+  ) {
+    final double[] result = new double[toA - fromA + toB - fromB];
+    int resultPos = 0;
+    int posA = fromA;
+    int posB = fromB;
+    while (posA < toA && posB < toB) {
+      final int comparison = compare(sortedA[posA], sortedB[posB]);
+      if (comparison < 0) {
+        result[resultPos++] = sortedA[posA++];
+      } else if (comparison > 0) {
+        result[resultPos++] = sortedB[posB++];
+      } else {
+        result[resultPos++] = sortedA[posA++];
+        posB++;
+      }
+    }
+
+    System.arraycopy(sortedA, posA, result, resultPos, toA - posA);
+    resultPos += toA - posA;
+    System.arraycopy(sortedB, posB, result, resultPos, toB - posB);
+    resultPos += toB - posB;
+
+    return resultPos == result.length ? result : Arrays.copyOf(result, resultPos);
+  }
+
+  @Nonnull
+  public static double[] intersection(@Nonnull double[] sortedA, @Nonnull double[] sortedB) {
+    return intersection(sortedA, 0, sortedA.length, sortedB, 0, sortedB.length);
+  }
+
+  @Nonnull
+  public static double[] intersection(
+      @Nonnull double[] sortedA, int fromA, int toA,
+      @Nonnull double[] sortedB, int fromB, int toB
+  ) {
+    final double[] result = new double[Math.min(toA - fromA, toB - fromB)];
+    int resultPos = 0;
+    int posA = fromA;
+    int posB = fromB;
+    while (posA < toA && posB < toB) {
+      final int comparison = compare(sortedA[posA], sortedB[posB]);
+      if (comparison < 0) {
+        posA++;
+      } else if (comparison > 0) {
+        posB++;
+      } else {
+        result[resultPos++] = sortedA[posA++];
+        posB++;
+      }
+    }
+
+    return resultPos == result.length ? result : Arrays.copyOf(result, resultPos);
+  }
+
+  /**
+   * Moves values accepted by the filter to the start of the array, in place, keeping their order.
+   *
+   * @return count of the accepted values
+   */
+  public static int filter(@Nonnull double[] arr, @Nonnull Filter filter) {
+    return filter(arr, 0, arr.length, filter);
+  }
+
+  /**
+   * @return new exclusive end of the range
+   */
+  public static int filter(@Nonnull double[] arr, int from, int to, @Nonnull Filter filter) {
+    int end = from;
+    for (int i = from; i < to; i++) {
+      final double value = arr[i];
+      if (filter.apply(value)) {
+        arr[end] = value;
+        end++;
+      }
+    }
+
+    return end;
+  }
+
+  //  same semantics as Double.equals and Arrays.sort: NaN equals NaN, -0.0 is less than 0.0
+  private static boolean equal(final double a, final double b) {
+    return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+  }
+
+  private static int compare(final double a, final double b) {
+    return Double.compare(a, b);
+  }
+}
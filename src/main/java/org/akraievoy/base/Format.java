@@ -18,35 +18,98 @@
 
 package org.akraievoy.base;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.text.*;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.Locale;
 
+/**
+ * Text formatting helpers, all of them safe to call concurrently without any shared locks:
+ * numbers are formatted by the stateless {@link NumberText}, dates by per-thread copies of the formats.
+ */
 public class Format {
+  /**
+   * @deprecated not thread-safe, serves only as a prototype of the per-thread date formats
+   */
+  @Deprecated
   protected static final DateFormat dateFormat = SimpleDateFormat.getDateInstance(SimpleDateFormat.SHORT);
+  /**
+   * @deprecated not thread-safe, serves only as a prototype of the per-thread date-time formats
+   */
+  @Deprecated
   protected static final DateFormat dateTimeFormat = SimpleDateFormat.getDateTimeInstance(SimpleDateFormat.SHORT, SimpleDateFormat.SHORT);
+  /**
+   * @deprecated not thread-safe and not used anymore, see {@link NumberText#formatFixed(double, int)}
+   */
+  @Deprecated
   protected static final NumberFormat decimalFormat2 = new DecimalFormat("###########0.##", new DecimalFormatSymbols(Locale.ENGLISH));
+  /**
+   * @deprecated not thread-safe and not used anymore, see {@link NumberText#formatFixed(double, int)}
+   */
+  @Deprecated
   protected static final NumberFormat decimalFormat4 = new DecimalFormat("###########0.####", new DecimalFormatSymbols(Locale.ENGLISH));
+  /**
+   * @deprecated not thread-safe and not used anymore, see {@link NumberText#formatFixed(double, int)}
+   */
+  @Deprecated
   protected static final NumberFormat decimalFormat6 = new DecimalFormat("###########0.######", new DecimalFormatSymbols(Locale.ENGLISH));
 
+  private static final ThreadLocal<DateFormat> dateFormats = new ThreadLocal<DateFormat>() {
+    protected DateFormat initialValue() {
+      return (DateFormat) dateFormat.clone();
+    }
+  };
+  private static final ThreadLocal<DateFormat> dateTimeFormats = new ThreadLocal<DateFormat>() {
+    protected DateFormat initialValue() {
+      return (DateFormat) dateTimeFormat.clone();
+    }
+  };
+
   public static String format(final long[] longs) {
     return format(longs, " ");
   }
 
   public static String format(final long[] longs, final String separator) {
-    final StringBuilder result = new StringBuilder();
+    return format(new StringBuilder(), longs, separator).toString();
+  }
 
+  public static StringBuilder format(final StringBuilder target, final long[] longs, final String separator) {
     for (int i = 0, length = longs.length; i < length; i++) {
-      long aLong = longs[i];
-      result.append(aLong);
-      if (i < length - 1) {
-        result.append(separator);
+      if (i > 0) {
+        target.append(separator);
       }
+      target.append(longs[i]);
     }
 
-    return result.toString();
+    return target;
+  }
+
+  /**
+   * Writers get the text in chunks, without materializing the whole of it, other targets char by char.
+   */
+  public static <A extends Appendable> A format(
+      final A target, final long[] longs, final String separator
+  ) throws IOException {
+    if (target instanceof Writer) {
+      format(new WriterChunks((Writer) target), longs, separator);
+      return target;
+    }
+
+    for (int i = 0, length = longs.length; i < length; i++) {
+      if (i > 0) {
+        target.append(separator);
+      }
+      appendLong(target, longs[i]);
+    }
+
+    return target;
   }
 
   public static String format(final Long[] longs) {
@@ -54,17 +117,18 @@ public class Format {
   }
 
   public static String format(final Long[] longs, final String separator) {
-    final StringBuilder result = new StringBuilder();
+    return format(new StringBuilder(), longs, separator).toString();
+  }
 
+  public static StringBuilder format(final StringBuilder target, final Long[] longs, final String separator) {
     for (int i = 0, length = longs.length; i < length; i++) {
-      long aLong = longs[i];
-      result.append(aLong);
-      if (i < length - 1) {
-        result.append(separator);
+      if (i > 0) {
+        target.append(separator);
       }
+      target.append(longs[i].longValue());
     }
 
-    return result.toString();
+    return target;
   }
 
   public static String format(final Collection<Long> longs) {
@@ -72,22 +136,45 @@ public class Format {
   }
 
   public static String format(final Collection<Long> longs, final String separator) {
-    final StringBuilder result = new StringBuilder();
+    return format(new StringBuilder(), longs, separator).toString();
+  }
 
+  public static StringBuilder format(final StringBuilder target, final Collection<Long> longs, final String separator) {
     for (Iterator<Long> longIterator = longs.iterator(); longIterator.hasNext();) {
-      Long aLong = longIterator.next();
-      result.append(aLong);
+      target.append(longIterator.next().longValue());
 
       if (longIterator.hasNext()) {
-        result.append(separator);
+        target.append(separator);
       }
     }
 
-    return result.toString();
+    return target;
+  }
+
+  /**
+   * Writers get the text in chunks, without materializing the whole of it, other targets char by char.
+   */
+  public static <A extends Appendable> A format(
+      final A target, final Collection<Long> longs, final String separator
+  ) throws IOException {
+    if (target instanceof Writer) {
+      format(new WriterChunks((Writer) target), longs, separator);
+      return target;
+    }
+
+    for (Iterator<Long> longIterator = longs.iterator(); longIterator.hasNext();) {
+      appendLong(target, longIterator.next());
+
+      if (longIterator.hasNext()) {
+        target.append(separator);
+      }
+    }
+
+    return target;
   }
 
   public static String format(Date aDate) {
-    return aDate != null ? dateFormat.format(aDate) : "";
+    return aDate != null ? dateFormats.get().format(aDate) : "";
   }
 
   public static String format(Date aDate, final boolean includeTime) {
@@ -95,10 +182,40 @@ public class Format {
       return format(aDate);
     }
 
-    return aDate != null ? dateTimeFormat.format(aDate) : "";
+    return aDate != null ? dateTimeFormats.get().format(aDate) : "";
+  }
+
+  public static StringBuilder format(final StringBuilder target, Date aDate, final boolean includeTime) {
+    return target.append(format(aDate, includeTime));
   }
 
   public static String formatDuration(long millis) {
+    return formatDuration(new StringBuilder(8), millis).toString();
+  }
+
+  /**
+   * Appends <code>hh:mm:ss</code>, hours take more than two digits if needed.
+   */
+  public static StringBuilder formatDuration(final StringBuilder target, long millis) {
+    final int second = 1000;
+    final long minute = 60 * second;
+    final long hour = 60 * minute;
+
+    if (millis < 0) {
+      return target.append(formatNegativeDuration(millis));
+    }
+
+    final long hours = millis / hour;
+    if (hours < 10) {
+      target.append('0');
+    }
+    target.append(hours).append(':');
+    appendTwoDigits(target, (millis % hour) / minute).append(':');
+    return appendTwoDigits(target, (millis % minute) / second);
+  }
+
+  //  negative durations are padded by the overall length, exactly as they always were
+  private static String formatNegativeDuration(long millis) {
     final StringBuilder stamp = new StringBuilder("");
 
     final int second = 1000;
@@ -127,36 +244,48 @@ public class Format {
     return stamp.toString();
   }
 
+  private static StringBuilder appendTwoDigits(final StringBuilder target, final long value) {
+    return target.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+  }
+
   public static String formatMem(long bytes) {
+    return formatMem(new StringBuilder(8), bytes).toString();
+  }
+
+  public static StringBuilder formatMem(final StringBuilder target, long bytes) {
     final long tolerance = 8;
     final long k = 1024;
     if (bytes < tolerance * k) {
-      return String.valueOf(bytes) + "b";
+      return target.append(bytes).append('b');
     }
 
     final long m = k * k;
     if (bytes < tolerance * m) {
-      return String.valueOf((bytes + k / 2) / k) + "k";
+      return target.append((bytes + k / 2) / k).append('k');
     }
 
     final long g = m * k;
     if (bytes < tolerance * g) {
-      return String.valueOf((bytes + m / 2) / m) + "m";
+      return target.append((bytes + m / 2) / m).append('m');
     }
 
-    return String.valueOf((bytes + g / 2) / g) + "g";
+    return target.append((bytes + g / 2) / g).append('g');
   }
 
-  public static synchronized String format(final Number somenumber, final String defaultValue) {
+  public static String format(final Number somenumber, final String defaultValue) {
     if (somenumber == null) {
       return defaultValue;
     }
 
-    if (somenumber instanceof Float) {
-      return format2(somenumber.floatValue());
-    } else {
-      return format2(somenumber.doubleValue());
+    return format(somenumber.doubleValue());
+  }
+
+  public static StringBuilder format(final StringBuilder target, final Number somenumber, final String defaultValue) {
+    if (somenumber == null) {
+      return target.append(defaultValue);
     }
+
+    return format2(target, somenumber.doubleValue());
   }
 
   public static String format(final Number somenumber) {
@@ -164,42 +293,347 @@ public class Format {
   }
 
   public static String format(final double somenumber) {
-    return format(new Double(somenumber));
+    return format2(somenumber);
   }
 
   public static String format(final float somenumber) {
-    return format(new Float(somenumber));
+    return format2(somenumber);
   }
 
   public static String format2(final double somenumber) {
-    return decimalFormat2.format(somenumber);
+    return NumberText.formatFixed(somenumber, 2);
   }
 
   public static String format2(final float somenumber) {
-    return decimalFormat2.format(somenumber);
+    return NumberText.formatFixed(somenumber, 2);
+  }
+
+  public static StringBuilder format2(final StringBuilder target, final double somenumber) {
+    return NumberText.appendFixed(target, somenumber, 2);
   }
 
   public static String format4(final double somenumber) {
-    return decimalFormat4.format(somenumber);
+    return NumberText.formatFixed(somenumber, 4);
   }
 
   public static String format4(final float somenumber) {
-    return decimalFormat4.format(somenumber);
+    return NumberText.formatFixed(somenumber, 4);
+  }
+
+  public static StringBuilder format4(final StringBuilder target, final double somenumber) {
+    return NumberText.appendFixed(target, somenumber, 4);
   }
 
   public static String format6(final double somenumber) {
-    return decimalFormat6.format(somenumber);
+    return NumberText.formatFixed(somenumber, 6);
   }
 
   public static String format6(final float somenumber) {
-    return decimalFormat6.format(somenumber);
+    return NumberText.formatFixed(somenumber, 6);
+  }
+
+  public static StringBuilder format6(final StringBuilder target, final double somenumber) {
+    return NumberText.appendFixed(target, somenumber, 6);
   }
 
   public static String upperFirst(final String str) {
     return Character.toUpperCase(str.charAt(0)) + str.substring(1);
   }
 
+  public static StringBuilder upperFirst(final StringBuilder target, final String str) {
+    return target.append(Character.toUpperCase(str.charAt(0))).append(str, 1, str.length());
+  }
+
   public static String lowerFirst(final String str) {
     return Character.toLowerCase(str.charAt(0)) + str.substring(1);
   }
+
+  public static StringBuilder lowerFirst(final StringBuilder target, final String str) {
+    return target.append(Character.toLowerCase(str.charAt(0))).append(str, 1, str.length());
+  }
+
+  /**
+   * Streams the ints to the writer in chunks, without materializing the whole text.
+   */
+  public static Writer format(final Writer target, final int[] ints, final String separator) throws IOException {
+    format(new WriterChunks(target), ints, separator);
+    return target;
+  }
+
+  /**
+   * @param fractionDigits as in {@link NumberText#formatFixed(double, int)}
+   */
+  public static Writer format(
+      final Writer target, final double[] doubles, final int fractionDigits, final String separator
+  ) throws IOException {
+    format(new WriterChunks(target), doubles, fractionDigits, separator);
+    return target;
+  }
+
+  /**
+   * Streams the longs to the stream as ASCII text in chunks, the separator should be ASCII too.
+   */
+  public static OutputStream format(
+      final OutputStream target, final long[] longs, final String separator
+  ) throws IOException {
+    format(new StreamChunks(target), longs, separator);
+    return target;
+  }
+
+  public static OutputStream format(
+      final OutputStream target, final int[] ints, final String separator
+  ) throws IOException {
+    format(new StreamChunks(target), ints, separator);
+    return target;
+  }
+
+  public static OutputStream format(
+      final OutputStream target, final double[] doubles, final int fractionDigits, final String separator
+  ) throws IOException {
+    format(new StreamChunks(target), doubles, fractionDigits, separator);
+    return target;
+  }
+
+  public static OutputStream format(
+      final OutputStream target, final Collection<Long> longs, final String separator
+  ) throws IOException {
+    format(new StreamChunks(target), longs, separator);
+    return target;
+  }
+
+  private static void format(final Chunks chunks, final long[] longs, final String separator) throws IOException {
+    for (int i = 0; i < longs.length; i++) {
+      chunks.separate(i, separator).pos = NumberText.appendLong(chunks.chars, chunks.pos, longs[i]);
+    }
+    chunks.flush();
+  }
+
+  private static void format(final Chunks chunks, final int[] ints, final String separator) throws IOException {
+    for (int i = 0; i < ints.length; i++) {
+      chunks.separate(i, separator).pos = NumberText.appendLong(chunks.chars, chunks.pos, ints[i]);
+    }
+    chunks.flush();
+  }
+
+  private static void format(
+      final Chunks chunks, final double[] doubles, final int fractionDigits, final String separator
+  ) throws IOException {
+    for (int i = 0; i < doubles.length; i++) {
+      chunks.separate(i, separator).pos = NumberText.appendFixed(chunks.chars, chunks.pos, doubles[i], fractionDigits);
+    }
+    chunks.flush();
+  }
+
+  private static void format(
+      final Chunks chunks, final Collection<Long> longs, final String separator
+  ) throws IOException {
+    int i = 0;
+    for (Long aLong : longs) {
+      chunks.separate(i++, separator).pos = NumberText.appendLong(chunks.chars, chunks.pos, aLong);
+    }
+    chunks.flush();
+  }
+
+  /**
+   * Puts as many of <code>longs[from..]</code> as fit into the buffer, each preceded by the separator
+   * unless it's the very first one: drain the buffer and call again from the returned index to continue.
+   *
+   * @return index of the first element not written, <code>longs.length</code> when done
+   * @throws BufferOverflowException if not even the first element fits, so that callers looping until done
+   *                                 never spin without progress
+   */
+  public static int format(final CharBuffer target, final long[] longs, final int from, final String separator) {
+    final char[] element = new char[ELEMENT_CHARS + separator.length()];
+    for (int i = from; i < longs.length; i++) {
+      final int length = NumberText.appendLong(element, separate(element, i, separator), longs[i]);
+      if (target.remaining() < length) {
+        return stopped(i, from);
+      }
+      target.put(element, 0, length);
+    }
+    return longs.length;
+  }
+
+  public static int format(final CharBuffer target, final int[] ints, final int from, final String separator) {
+    final char[] element = new char[ELEMENT_CHARS + separator.length()];
+    for (int i = from; i < ints.length; i++) {
+      final int length = NumberText.appendLong(element, separate(element, i, separator), ints[i]);
+      if (target.remaining() < length) {
+        return stopped(i, from);
+      }
+      target.put(element, 0, length);
+    }
+    return ints.length;
+  }
+
+  public static int format(
+      final CharBuffer target, final double[] doubles, final int fractionDigits, final int from, final String separator
+  ) {
+    final char[] element = new char[ELEMENT_CHARS + separator.length()];
+    for (int i = from; i < doubles.length; i++) {
+      final int length = NumberText.appendFixed(element, separate(element, i, separator), doubles[i], fractionDigits);
+      if (target.remaining() < length) {
+        return stopped(i, from);
+      }
+      target.put(element, 0, length);
+    }
+    return doubles.length;
+  }
+
+  /**
+   * Same as {@link #format(CharBuffer, long[], int, String)}, but puts ASCII bytes.
+   */
+  public static int format(final ByteBuffer target, final long[] longs, final int from, final String separator) {
+    final char[] element = new char[ELEMENT_CHARS + separator.length()];
+    for (int i = from; i < longs.length; i++) {
+      final int length = NumberText.appendLong(element, separate(element, i, separator), longs[i]);
+      if (!putAscii(target, element, length)) {
+        return stopped(i, from);
+      }
+    }
+    return longs.length;
+  }
+
+  public static int format(final ByteBuffer target, final int[] ints, final int from, final String separator) {
+    final char[] element = new char[ELEMENT_CHARS + separator.length()];
+    for (int i = from; i < ints.length; i++) {
+      final int length = NumberText.appendLong(element, separate(element, i, separator), ints[i]);
+      if (!putAscii(target, element, length)) {
+        return stopped(i, from);
+      }
+    }
+    return ints.length;
+  }
+
+  public static int format(
+      final ByteBuffer target, final double[] doubles, final int fractionDigits, final int from, final String separator
+  ) {
+    final char[] element = new char[ELEMENT_CHARS + separator.length()];
+    for (int i = from; i < doubles.length; i++) {
+      final int length = NumberText.appendFixed(element, separate(element, i, separator), doubles[i], fractionDigits);
+      if (!putAscii(target, element, length)) {
+        return stopped(i, from);
+      }
+    }
+    return doubles.length;
+  }
+
+  private static int stopped(final int index, final int from) {
+    if (index == from) {
+      throw new BufferOverflowException();
+    }
+    return index;
+  }
+
+  private static int separate(final char[] element, final int index, final String separator) {
+    if (index == 0) {
+      return 0;
+    }
+    separator.getChars(0, separator.length(), element, 0);
+    return separator.length();
+  }
+
+  private static boolean putAscii(final ByteBuffer target, final char[] chars, final int length) {
+    if (target.remaining() < length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      target.put((byte) chars[i]);
+    }
+    return true;
+  }
+
+  //  enough for any long, as well as any double formatted by the DecimalFormat fallback
+  private static final int ELEMENT_CHARS = 512;
+  private static final int CHUNK_CHARS = 8192;
+
+  /**
+   * Text is accumulated in a fixed chunk, which is flushed to the target whenever
+   * the next element might not fit.
+   */
+  private static abstract class Chunks {
+    final char[] chars = new char[CHUNK_CHARS + ELEMENT_CHARS];
+    int pos;
+
+    Chunks separate(final int index, final String separator) throws IOException {
+      if (pos + separator.length() > CHUNK_CHARS) {
+        flush();
+      }
+      if (index == 0) {
+        return this;
+      }
+
+      if (separator.length() > CHUNK_CHARS) {
+        //  too long to ever fit into the chunk, written through it piece by piece instead
+        for (int start = 0; start < separator.length(); start += chars.length) {
+          final int end = Math.min(separator.length(), start + chars.length);
+          separator.getChars(start, end, chars, 0);
+          write(end - start);
+        }
+        return this;
+      }
+
+      separator.getChars(0, separator.length(), chars, pos);
+      pos += separator.length();
+      return this;
+    }
+
+    void flush() throws IOException {
+      if (pos > 0) {
+        write(pos);
+        pos = 0;
+      }
+    }
+
+    abstract void write(int length) throws IOException;
+  }
+
+  private static class WriterChunks extends Chunks {
+    final Writer target;
+
+    WriterChunks(final Writer target) {
+      this.target = target;
+    }
+
+    void write(final int length) throws IOException {
+      target.write(chars, 0, length);
+    }
+  }
+
+  private static class StreamChunks extends Chunks {
+    final OutputStream target;
+    final byte[] bytes = new byte[chars.length];
+
+    StreamChunks(final OutputStream target) {
+      this.target = target;
+    }
+
+    void write(final int length) throws IOException {
+      for (int i = 0; i < length; i++) {
+        bytes[i] = (byte) chars[i];
+      }
+      target.write(bytes, 0, length);
+    }
+  }
+
+  private static void appendLong(final Appendable target, final long value) throws IOException {
+    if (value == Long.MIN_VALUE) {
+      target.append("-9223372036854775808");
+      return;
+    }
+
+    long rest = value;
+    if (rest < 0) {
+      target.append('-');
+      rest = -rest;
+    }
+
+    long scale = 1;
+    while (rest / scale >= 10) {
+      scale *= 10;
+    }
+    for (; scale > 0; scale /= 10) {
+      target.append((char) ('0' + rest / scale % 10));
+    }
+  }
 }
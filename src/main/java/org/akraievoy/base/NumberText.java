@@ -0,0 +1,513 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.math.BigInteger;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * Numeric text conversions for the hot paths of {@link Parse} and {@link Format}.
+ * <p/>
+ * Parsing computes doubles of up to 18 significant digits without any allocations: exactly via a single
+ * floating point operation for small exponents (Clinger's fast path), otherwise by multiplying with 128-bit
+ * truncated powers of five (Eisel-Lemire), which detects the rare cases it can't round correctly.
+ * Those cases, as well as longer inputs, are delegated to {@link Double#parseDouble(String)}.
+ * <p/>
+ * Fixed-precision formatting produces the same text as <code>DecimalFormat("0.##")</code>
+ * (with as many optional fraction digits as requested, half-even rounding, english symbols),
+ * computing the digits with integer arithmetic whenever rounding the exact binary value is guaranteed
+ * to give the same digits as the <code>DecimalFormat</code>, which rounds the shortest representation:
+ * that is while the spacing of doubles around the value is below the last requested fraction digit,
+ * and the value is not within that spacing of a tie.
+ * Larger values, NaNs and infinities are formatted with a per-thread <code>DecimalFormat</code>.
+ * <p/>
+ * Shortest round-trip formatting is left to {@link Double#toString(double)}.
+ */
+public class NumberText {
+  public static final int MAX_FRACTION_DIGITS = 9;
+
+  static final long MANTISSA_DIGITS_LIMIT = 100000000000000000L;
+  static final long EXACT_MANTISSA_LIMIT = 1L << 53;
+  static final int EXACT_POWERS_OF_TEN = 22;
+  static final int EXPONENT_LIMIT = 100000;
+  static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+      1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+  static final long[] LONG_POWERS_OF_TEN = {
+      1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+  };
+  //  floor(digits * log2(10)): doubles with ulp of 2^-(that + 1) or less are rounded exactly as DecimalFormat does
+  static final int[] FRACTION_BITS = {0, 3, 6, 9, 13, 16, 19, 23, 26, 29};
+
+  static final int SMALLEST_POWER = -325;
+  static final int LARGEST_POWER = 308;
+  static final long[] POWERS_OF_FIVE_HIGH = new long[LARGEST_POWER - SMALLEST_POWER + 1];
+  static final long[] POWERS_OF_FIVE_LOW = new long[LARGEST_POWER - SMALLEST_POWER + 1];
+
+  static {
+    final BigInteger five = BigInteger.valueOf(5);
+    final BigInteger low64 = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+    for (int q = SMALLEST_POWER; q <= LARGEST_POWER; q++) {
+      final BigInteger truncated;
+      if (q >= 0) {
+        final BigInteger power = five.pow(q);
+        final int shift = power.bitLength() - 128;
+        truncated = shift > 0 ? power.shiftRight(shift) : power.shiftLeft(-shift);
+      } else {
+        //  reciprocals are rounded up, see Lemire, "Number Parsing at a Gigabyte per Second"
+        final BigInteger power = five.pow(-q);
+        final int z = power.bitLength();
+        final int b = q >= -27 ? z + 127 : 2 * z + 128;
+        final BigInteger reciprocal = BigInteger.ONE.shiftLeft(b).divide(power).add(BigInteger.ONE);
+        truncated = reciprocal.shiftRight(Math.max(0, reciprocal.bitLength() - 128));
+      }
+
+      POWERS_OF_FIVE_HIGH[q - SMALLEST_POWER] = truncated.shiftRight(64).longValue();
+      POWERS_OF_FIVE_LOW[q - SMALLEST_POWER] = truncated.and(low64).longValue();
+    }
+  }
+
+  static final ThreadLocal<NumberFormat[]> fallbackFormats = new ThreadLocal<NumberFormat[]>() {
+    protected NumberFormat[] initialValue() {
+      return new NumberFormat[MAX_FRACTION_DIGITS + 1];
+    }
+  };
+
+  protected NumberText() {
+    //	sealed
+  }
+
+  /**
+   * @see Parse#parseDouble(CharSequence, int, int, double)
+   */
+  public static double parseDouble(
+      @Nullable final CharSequence chars, final int from, final int to, final double defaultVal
+  ) {
+    if (chars == null || from >= to) {
+      return defaultVal;
+    }
+
+    int pos = from;
+    char c = chars.charAt(pos);
+    final boolean negative = c == '-';
+    if (negative || c == '+') {
+      if (++pos == to) {
+        return defaultVal;
+      }
+      c = chars.charAt(pos);
+    }
+
+    if (c == 'N') {
+      return matches(chars, pos, to, "NaN") ? Double.NaN : defaultVal;
+    }
+    if (c == 'I') {
+      return matches(chars, pos, to, "Infinity") ?
+          (negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY) : defaultVal;
+    }
+
+    long mantissa = 0;
+    int exponent = 0;
+    boolean digits = false;
+    boolean truncated = false;
+
+    for (; pos < to; pos++) {
+      final int digit = chars.charAt(pos) - '0';
+      if (digit < 0 || digit > 9) {
+        break;
+      }
+      digits = true;
+      if (mantissa < MANTISSA_DIGITS_LIMIT) {
+        mantissa = mantissa * 10 + digit;
+      } else {
+        exponent++;
+        truncated |= digit != 0;
+      }
+    }
+
+    if (pos < to && chars.charAt(pos) == '.') {
+      for (pos++; pos < to; pos++) {
+        final int digit = chars.charAt(pos) - '0';
+        if (digit < 0 || digit > 9) {
+          break;
+        }
+        digits = true;
+        if (mantissa < MANTISSA_DIGITS_LIMIT) {
+          mantissa = mantissa * 10 + digit;
+          exponent--;
+        } else {
+          truncated |= digit != 0;
+        }
+      }
+    }
+
+    if (!digits) {
+      return defaultVal;
+    }
+
+    if (pos < to && (chars.charAt(pos) == 'e' || chars.charAt(pos) == 'E')) {
+      if (++pos == to) {
+        return defaultVal;
+      }
+      final char expSign = chars.charAt(pos);
+      final boolean expNegative = expSign == '-';
+      if ((expNegative || expSign == '+') && ++pos == to) {
+        return defaultVal;
+      }
+
+      int explicit = 0;
+      for (; pos < to; pos++) {
+        final int digit = chars.charAt(pos) - '0';
+        if (digit < 0 || digit > 9) {
+          return defaultVal;
+        }
+        if (explicit < EXPONENT_LIMIT) {
+          explicit = explicit * 10 + digit;
+        }
+      }
+      exponent += expNegative ? -explicit : explicit;
+    }
+
+    if (pos != to) {
+      return defaultVal;
+    }
+
+    if (mantissa == 0) {
+      return negative ? -0.0 : 0.0;
+    }
+
+    if (!truncated) {
+      //  both the mantissa and the power of ten are exact doubles, so is the single rounding of their product
+      if (mantissa <= EXACT_MANTISSA_LIMIT && exponent >= -EXACT_POWERS_OF_TEN && exponent <= EXACT_POWERS_OF_TEN) {
+        final double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+      }
+
+      final long bits = eiselLemire(mantissa, exponent);
+      if (bits >= 0) {
+        return Double.longBitsToDouble(negative ? bits | Long.MIN_VALUE : bits);
+      }
+    }
+
+    return Double.parseDouble(chars.subSequence(from, to).toString());
+  }
+
+  /**
+   * @param mantissa positive decimal significand
+   * @param exponent power of ten
+   * @return bits of the correctly rounded positive double, or -1 if that can't be decided here
+   */
+  static long eiselLemire(final long mantissa, final int exponent) {
+    if (exponent < SMALLEST_POWER || exponent > LARGEST_POWER) {
+      return -1;
+    }
+
+    final long factorHigh = POWERS_OF_FIVE_HIGH[exponent - SMALLEST_POWER];
+    final long biasedExponent = (((152170 + 65536) * (long) exponent) >> 16) + 1024 + 63;
+
+    int leadingZeros = Long.numberOfLeadingZeros(mantissa);
+    final long normalized = mantissa << leadingZeros;
+
+    long lower = normalized * factorHigh;
+    long upper = multiplyHigh(normalized, factorHigh);
+    if ((upper & 0x1FF) == 0x1FF && unsignedLess(lower + normalized, lower)) {
+      //  the product with the high half of the power is not precise enough, adding the low half
+      final long factorLow = POWERS_OF_FIVE_LOW[exponent - SMALLEST_POWER];
+      final long productLow = normalized * factorLow;
+      final long productMiddle = lower + multiplyHigh(normalized, factorLow);
+      if (unsignedLess(productMiddle, lower)) {
+        upper++;
+      }
+      if (productMiddle + 1 == 0 && (upper & 0x1FF) == 0x1FF && unsignedLess(productLow + normalized, productLow)) {
+        return -1;
+      }
+      lower = productMiddle;
+    }
+
+    final int upperBit = (int) (upper >>> 63);
+    long significand = upper >>> (upperBit + 9);
+    leadingZeros += 1 ^ upperBit;
+
+    if (lower == 0 && (upper & 0x1FF) == 0 && (significand & 3) == 1) {
+      //  right between two doubles, the truncated power does not tell which way to round
+      return -1;
+    }
+
+    significand += significand & 1;
+    significand >>>= 1;
+    if (significand >= (1L << 53)) {
+      significand = 1L << 52;
+      leadingZeros--;
+    }
+    significand &= ~(1L << 52);
+
+    final long realExponent = biasedExponent - leadingZeros;
+    if (realExponent < 1 || realExponent > 2046) {
+      //  subnormals and overflows
+      return -1;
+    }
+
+    return significand | realExponent << 52;
+  }
+
+  /**
+   * Same as <code>DecimalFormat("0.##...")</code> with <code>fractionDigits</code> optional fraction digits.
+   */
+  @Nonnull
+  public static String formatFixed(final double value, final int fractionDigits) {
+    final char[] buffer = new char[32];
+    final int length = formatFixed(buffer, 0, value, fractionDigits);
+    if (length >= 0) {
+      return new String(buffer, 0, length);
+    }
+
+    return fallbackFormat(fractionDigits).format(value);
+  }
+
+  /**
+   * Appends the same text as {@link #formatFixed(double, int)} returns, without intermediate strings.
+   */
+  @Nonnull
+  public static StringBuilder appendFixed(
+      @Nonnull final StringBuilder target, final double value, final int fractionDigits
+  ) {
+    final char[] buffer = new char[32];
+    final int length = formatFixed(buffer, 0, value, fractionDigits);
+    if (length >= 0) {
+      return target.append(buffer, 0, length);
+    }
+
+    return target.append(fallbackFormat(fractionDigits).format(value));
+  }
+
+  /**
+   * Writes the same text as {@link #formatFixed(double, int)} returns into the buffer.
+   *
+   * @return position after the last written char
+   * @throws ArrayIndexOutOfBoundsException if the text doesn't fit, 32 chars always suffice for values below 2^33
+   */
+  public static int appendFixed(
+      @Nonnull final char[] buffer, final int pos, final double value, final int fractionDigits
+  ) {
+    final int length = formatFixed(buffer, pos, value, fractionDigits);
+    if (length >= 0) {
+      return pos + length;
+    }
+
+    final String formatted = fallbackFormat(fractionDigits).format(value);
+    formatted.getChars(0, formatted.length(), buffer, pos);
+    return pos + formatted.length();
+  }
+
+  /**
+   * Writes the decimal text of the long into the buffer, as {@link Long#toString(long)} does.
+   *
+   * @return position after the last written char
+   */
+  public static int appendLong(@Nonnull final char[] buffer, final int pos, final long value) {
+    if (value == Long.MIN_VALUE) {
+      final String text = "-9223372036854775808";
+      text.getChars(0, text.length(), buffer, pos);
+      return pos + text.length();
+    }
+
+    if (value < 0) {
+      buffer[pos] = '-';
+      return writeDigits(buffer, pos + 1, -value, 0);
+    }
+
+    return writeDigits(buffer, pos, value, 0);
+  }
+
+  /**
+   * Shortest text which parses back to the same double, as the JDK computes it.
+   */
+  @Nonnull
+  public static StringBuilder appendShortest(@Nonnull final StringBuilder target, final double value) {
+    return target.append(value);
+  }
+
+  /**
+   * @return count of chars written, or -1 if the value should be formatted with the <code>DecimalFormat</code>
+   */
+  static int formatFixed(final char[] buffer, final int pos, final double value, final int fractionDigits) {
+    if (fractionDigits < 0 || fractionDigits > MAX_FRACTION_DIGITS) {
+      throw Die.unexpected("fractionDigits", fractionDigits, "should be in [0, " + MAX_FRACTION_DIGITS + "]");
+    }
+
+    final long bits = Double.doubleToRawLongBits(value);
+    final int biasedExponent = (int) (bits >>> 52) & 0x7FF;
+    long significand = bits & ((1L << 52) - 1);
+    if (biasedExponent == 0x7FF) {
+      return -1;
+    }
+    if (biasedExponent != 0) {
+      significand |= 1L << 52;
+    }
+
+    //  value is significand * 2^-shift
+    final int shift = biasedExponent == 0 ? 1074 : 1075 - biasedExponent;
+    if (significand != 0 && shift <= FRACTION_BITS[fractionDigits]) {
+      return -1;
+    }
+
+    final long scale = LONG_POWERS_OF_TEN[fractionDigits];
+    long integral = 0;
+    long fraction = 0;
+
+    if (significand != 0 && shift - 53 <= 4 * fractionDigits + 1) {
+      final long fractionBits;
+      if (shift < 64) {
+        integral = significand >>> shift;
+        fractionBits = significand & ((1L << shift) - 1);
+      } else {
+        fractionBits = significand;
+      }
+
+      //  fraction * 10^digits is at most 83 bits, and is shifted right by less than 128
+      final long productLow = fractionBits * scale;
+      final long productHigh = multiplyHigh(fractionBits, scale);
+      fraction = shift < 64 ?
+          productHigh << (64 - shift) | productLow >>> shift :
+          productHigh >>> (shift - 64);
+
+      final int halfBit = shift - 1;
+      final boolean half;
+      final boolean sticky;
+      if (halfBit < 64) {
+        half = (productLow >>> halfBit & 1) != 0;
+        sticky = (productLow & ((1L << halfBit) - 1)) != 0;
+      } else {
+        half = (productHigh >>> (halfBit - 64) & 1) != 0;
+        sticky = productLow != 0 || (productHigh & ((1L << (halfBit - 64)) - 1)) != 0;
+      }
+
+      //  DecimalFormat rounds the shortest representation, which may be the tie itself for values this close to it
+      if (nearTie(productHigh, productLow, halfBit, half, scale)) {
+        return -1;
+      }
+
+      final long parity = fractionDigits == 0 ? integral : fraction;
+      if (half && (sticky || (parity & 1) != 0)) {
+        fraction++;
+        if (fraction == scale) {
+          integral++;
+          fraction = 0;
+        }
+      }
+    }
+    //  else the value is zero or below a quarter of the last digit
+
+    int end = pos;
+    if (bits < 0) {
+      buffer[end++] = '-';
+    }
+    end = writeDigits(buffer, end, integral, 0);
+
+    if (fraction != 0) {
+      int digits = fractionDigits;
+      while (fraction % 10 == 0) {
+        fraction /= 10;
+        digits--;
+      }
+      buffer[end++] = '.';
+      end = writeDigits(buffer, end, fraction, digits);
+    }
+
+    return end - pos;
+  }
+
+  /**
+   * @return true if the bits of the 128-bit product below the half bit are within the distance of the half
+   */
+  static boolean nearTie(final long high, final long low, final int halfBit, final boolean half, final long distance) {
+    final long highMask = halfBit < 64 ? 0 : (1L << (halfBit - 64)) - 1;
+    final long lowMask = halfBit < 64 ? (1L << halfBit) - 1 : -1L;
+    //  the bits are the distance above the half, or inverted the distance below it
+    final long belowHigh = (half ? high : ~high) & highMask;
+    final long belowLow = (half ? low : ~low) & lowMask;
+    return belowHigh == 0 && unsignedLess(belowLow, distance + 1);
+  }
+
+  static int writeDigits(final char[] buffer, final int pos, final long value, final int minDigits) {
+    int digits = 1;
+    for (long rest = value / 10; rest != 0; rest /= 10) {
+      digits++;
+    }
+    digits = Math.max(digits, minDigits);
+
+    long rest = value;
+    for (int i = pos + digits - 1; i >= pos; i--) {
+      buffer[i] = (char) ('0' + rest % 10);
+      rest /= 10;
+    }
+
+    return pos + digits;
+  }
+
+  static NumberFormat fallbackFormat(final int fractionDigits) {
+    final NumberFormat[] formats = fallbackFormats.get();
+    NumberFormat format = formats[fractionDigits];
+    if (format == null) {
+      final StringBuilder pattern = new StringBuilder("###########0");
+      if (fractionDigits > 0) {
+        pattern.append('.');
+        for (int i = 0; i < fractionDigits; i++) {
+          pattern.append('#');
+        }
+      }
+      format = formats[fractionDigits] = new DecimalFormat(pattern.toString(), new DecimalFormatSymbols(Locale.ENGLISH));
+    }
+    return format;
+  }
+
+  static long multiplyHigh(final long a, final long b) {
+    final long aLow = a & 0xFFFFFFFFL;
+    final long aHigh = a >>> 32;
+    final long bLow = b & 0xFFFFFFFFL;
+    final long bHigh = b >>> 32;
+
+    final long lowLow = aLow * bLow;
+    final long highLow = aHigh * bLow;
+    final long cross = (lowLow >>> 32) + (highLow & 0xFFFFFFFFL) + aLow * bHigh;
+
+    return aHigh * bHigh + (highLow >>> 32) + (cross >>> 32);
+  }
+
+  static boolean unsignedLess(final long a, final long b) {
+    return a + Long.MIN_VALUE < b + Long.MIN_VALUE;
+  }
+
+  static boolean matches(final CharSequence chars, final int from, final int to, final String expected) {
+    if (to - from != expected.length()) {
+      return false;
+    }
+    for (int i = 0; i < expected.length(); i++) {
+      if (chars.charAt(from + i) != expected.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
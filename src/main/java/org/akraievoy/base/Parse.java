@@ -22,6 +22,8 @@ import com.google.common.base.Strings;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 
 public class Parse {
   private static final Integer[] INT_OBJS_EMPTY = new Integer[]{};
@@ -112,6 +114,268 @@ public class Parse {
     }
   }
 
+  /**
+   * Parses an optionally signed decimal int from <code>chars[from, to)</code>, without exceptions or allocations.
+   *
+   * @return parsed value, or the default if the slice is empty, has anything but ASCII digits, or overflows
+   */
+  public static int parseInt(@Nullable final CharSequence chars, final int from, final int to, final int defaultVal) {
+    if (chars == null || from >= to) {
+      return defaultVal;
+    }
+
+    int pos = from;
+    final char first = chars.charAt(pos);
+    final boolean negative = first == '-';
+    if ((negative || first == '+') && ++pos == to) {
+      return defaultVal;
+    }
+
+    //  accumulating negatively, as MIN_VALUE has no positive counterpart
+    final int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+    final int limitBeforeShift = limit / 10;
+    int result = 0;
+    for (; pos < to; pos++) {
+      final int digit = chars.charAt(pos) - '0';
+      if (digit < 0 || digit > 9 || result < limitBeforeShift) {
+        return defaultVal;
+      }
+      result *= 10;
+      if (result < limit + digit) {
+        return defaultVal;
+      }
+      result -= digit;
+    }
+
+    return negative ? result : -result;
+  }
+
+  public static int parseInt(@Nullable final CharSequence chars, final int defaultVal) {
+    return chars == null ? defaultVal : parseInt(chars, 0, chars.length(), defaultVal);
+  }
+
+  /**
+   * Parses an optionally signed decimal long from <code>chars[from, to)</code>, without exceptions or allocations.
+   *
+   * @return parsed value, or the default if the slice is empty, has anything but ASCII digits, or overflows
+   */
+  public static long parseLong(@Nullable final CharSequence chars, final int from, final int to, final long defaultVal) {
+    if (chars == null || from >= to) {
+      return defaultVal;
+    }
+
+    int pos = from;
+    final char first = chars.charAt(pos);
+    final boolean negative = first == '-';
+    if ((negative || first == '+') && ++pos == to) {
+      return defaultVal;
+    }
+
+    final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+    final long limitBeforeShift = limit / 10;
+    long result = 0;
+    for (; pos < to; pos++) {
+      final int digit = chars.charAt(pos) - '0';
+      if (digit < 0 || digit > 9 || result < limitBeforeShift) {
+        return defaultVal;
+      }
+      result *= 10;
+      if (result < limit + digit) {
+        return defaultVal;
+      }
+      result -= digit;
+    }
+
+    return negative ? result : -result;
+  }
+
+  public static long parseLong(@Nullable final CharSequence chars, final long defaultVal) {
+    return chars == null ? defaultVal : parseLong(chars, 0, chars.length(), defaultVal);
+  }
+
+  /**
+   * Parses a double from <code>chars[from, to)</code> without exceptions: optionally signed decimal
+   * with optional fraction and exponent, or <code>NaN</code>, or <code>Infinity</code>.
+   * <p/>
+   * Unlike {@link Double#parseDouble(String)} no whitespace, hex notation or type suffixes are accepted.
+   * Values with at most 18 significant digits are computed without allocations by {@link NumberText},
+   * the rest are validated first and then delegated to {@link Double#parseDouble(String)}.
+   *
+   * @return parsed value, or the default if the slice is empty or malformed
+   */
+  public static double parseDouble(
+      @Nullable final CharSequence chars, final int from, final int to, final double defaultVal
+  ) {
+    return NumberText.parseDouble(chars, from, to, defaultVal);
+  }
+
+  public static double parseDouble(@Nullable final CharSequence chars, final double defaultVal) {
+    return chars == null ? defaultVal : parseDouble(chars, 0, chars.length(), defaultVal);
+  }
+
+  /**
+   * Parses delimited fields of <code>chars[from, to)</code> into the target, empty or malformed fields get the default.
+   *
+   * @return count of fields in the slice, if it exceeds the target length the excess fields are not parsed
+   */
+  public static int ints(
+      @Nonnull final CharSequence chars, final int from, final int to, final char delimiter,
+      final int defaultVal, @Nonnull final int[] target
+  ) {
+    if (from >= to) {
+      return 0;
+    }
+
+    int count = 0;
+    int fieldFrom = from;
+    for (int pos = from; pos <= to; pos++) {
+      if (pos == to || chars.charAt(pos) == delimiter) {
+        if (count < target.length) {
+          target[count] = parseInt(chars, fieldFrom, pos, defaultVal);
+        }
+        count++;
+        fieldFrom = pos + 1;
+      }
+    }
+
+    return count;
+  }
+
+  public static int ints(
+      @Nonnull final char[] chars, final int from, final int to, final char delimiter,
+      final int defaultVal, @Nonnull final int[] target
+  ) {
+    return ints(CharBuffer.wrap(chars), from, to, delimiter, defaultVal, target);
+  }
+
+  /**
+   * Parses delimited fields of ASCII text between the position and the limit of the buffer, which are left intact.
+   */
+  public static int ints(
+      @Nonnull final ByteBuffer bytes, final char delimiter, final int defaultVal, @Nonnull final int[] target
+  ) {
+    return ints(new AsciiChars(bytes), bytes.position(), bytes.limit(), delimiter, defaultVal, target);
+  }
+
+  /**
+   * Parses delimited fields of <code>chars[from, to)</code> into the target, empty or malformed fields get the default.
+   *
+   * @return count of fields in the slice, if it exceeds the target length the excess fields are not parsed
+   */
+  public static int longs(
+      @Nonnull final CharSequence chars, final int from, final int to, final char delimiter,
+      final long defaultVal, @Nonnull final long[] target
+  ) {
+    if (from >= to) {
+      return 0;
+    }
+
+    int count = 0;
+    int fieldFrom = from;
+    for (int pos = from; pos <= to; pos++) {
+      if (pos == to || chars.charAt(pos) == delimiter) {
+        if (count < target.length) {
+          target[count] = parseLong(chars, fieldFrom, pos, defaultVal);
+        }
+        count++;
+        fieldFrom = pos + 1;
+      }
+    }
+
+    return count;
+  }
+
+  public static int longs(
+      @Nonnull final char[] chars, final int from, final int to, final char delimiter,
+      final long defaultVal, @Nonnull final long[] target
+  ) {
+    return longs(CharBuffer.wrap(chars), from, to, delimiter, defaultVal, target);
+  }
+
+  /**
+   * Parses delimited fields of ASCII text between the position and the limit of the buffer, which are left intact.
+   */
+  public static int longs(
+      @Nonnull final ByteBuffer bytes, final char delimiter, final long defaultVal, @Nonnull final long[] target
+  ) {
+    return longs(new AsciiChars(bytes), bytes.position(), bytes.limit(), delimiter, defaultVal, target);
+  }
+
+  /**
+   * Parses delimited fields of <code>chars[from, to)</code> into the target, empty or malformed fields get the default.
+   *
+   * @return count of fields in the slice, if it exceeds the target length the excess fields are not parsed
+   */
+  public static int doubles(
+      @Nonnull final CharSequence chars, final int from, final int to, final char delimiter,
+      final double defaultVal, @Nonnull final double[] target
+  ) {
+    if (from >= to) {
+      return 0;
+    }
+
+    int count = 0;
+    int fieldFrom = from;
+    for (int pos = from; pos <= to; pos++) {
+      if (pos == to || chars.charAt(pos) == delimiter) {
+        if (count < target.length) {
+          target[count] = parseDouble(chars, fieldFrom, pos, defaultVal);
+        }
+        count++;
+        fieldFrom = pos + 1;
+      }
+    }
+
+    return count;
+  }
+
+  public static int doubles(
+      @Nonnull final char[] chars, final int from, final int to, final char delimiter,
+      final double defaultVal, @Nonnull final double[] target
+  ) {
+    return doubles(CharBuffer.wrap(chars), from, to, delimiter, defaultVal, target);
+  }
+
+  /**
+   * Parses delimited fields of ASCII text between the position and the limit of the buffer, which are left intact.
+   */
+  public static int doubles(
+      @Nonnull final ByteBuffer bytes, final char delimiter, final double defaultVal, @Nonnull final double[] target
+  ) {
+    return doubles(new AsciiChars(bytes), bytes.position(), bytes.limit(), delimiter, defaultVal, target);
+  }
+
+  /**
+   * Read-only view of ASCII bytes as chars, indexed as the buffer itself.
+   */
+  static class AsciiChars implements CharSequence {
+    final ByteBuffer bytes;
+
+    AsciiChars(final ByteBuffer bytes) {
+      this.bytes = bytes;
+    }
+
+    public int length() {
+      return bytes.limit();
+    }
+
+    public char charAt(final int index) {
+      return (char) (bytes.get(index) & 0xFF);
+    }
+
+    public CharSequence subSequence(final int start, final int end) {
+      final char[] chars = new char[end - start];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = charAt(start + i);
+      }
+      return new String(chars);
+    }
+
+    public String toString() {
+      return subSequence(bytes.position(), bytes.limit()).toString();
+    }
+  }
+
   @Nonnull
   public static Integer[] ints(@Nullable final String[] strings, @Nullable final Integer defaultVal) {
     if (strings == null) {
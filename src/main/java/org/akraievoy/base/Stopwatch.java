@@ -18,15 +18,26 @@
 
 package org.akraievoy.base;
 
+import com.google.common.base.Ticker;
+
 public class Stopwatch {
+  private final Ticker ticker;
   private long snap;
 
   public Stopwatch() {
+    this(Tickers.nano());
+  }
+
+  /**
+   * @param ticker time source, see {@link Tickers}
+   */
+  public Stopwatch(final Ticker ticker) {
+    this.ticker = ticker;
     snap = curTime();
   }
 
   protected long curTime() {
-    return System.currentTimeMillis();
+    return Tickers.millis(ticker);
   }
 
   public long diff() {
@@ -0,0 +1,131 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base;
+
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Time sources to inject instead of calling {@link System} directly, all of them read nanoseconds.
+ *
+ * @see com.google.common.base.Ticker
+ */
+public class Tickers {
+  public static final long DEFAULT_RESOLUTION_MILLIS = 1;
+
+  private Tickers() {
+    //	sealed
+  }
+
+  /**
+   * @return ticker backed by {@link System#nanoTime()}
+   */
+  public static Ticker nano() {
+    return Ticker.systemTicker();
+  }
+
+  /**
+   * @return shared coarse ticker of default resolution, started on first use and never stopped
+   */
+  public static Ticker coarse() {
+    return CoarseHolder.COARSE;
+  }
+
+  public static long millis(final Ticker ticker) {
+    return ticker.read() / 1000000;
+  }
+
+  static class CoarseHolder {
+    static final CoarseTicker COARSE = new CoarseTicker(DEFAULT_RESOLUTION_MILLIS, TimeUnit.MILLISECONDS);
+
+    static {
+      COARSE.start();
+    }
+  }
+
+  /**
+   * Reading this one is a single volatile read: the value is updated by a dedicated daemon thread.
+   */
+  public static class CoarseTicker extends Ticker implements Startable, Runnable {
+    protected final long resolutionNanos;
+    protected final Object stateMutex = new Object();
+
+    protected volatile long nanos = System.nanoTime();
+    protected Thread thread;
+
+    public CoarseTicker(final long resolution, final TimeUnit unit) {
+      this.resolutionNanos = unit.toNanos(resolution);
+    }
+
+    public long read() {
+      return nanos;
+    }
+
+    public void start() {
+      synchronized (stateMutex) {
+        if (thread != null) {
+          return;
+        }
+
+        thread = new Executors.ThreadFactory(true, "coarse ticker").newThread(this);
+        thread.start();
+      }
+    }
+
+    public void stop() {
+      synchronized (stateMutex) {
+        if (thread != null) {
+          thread.interrupt();
+          thread = null;
+        }
+      }
+    }
+
+    public void run() {
+      while (!Thread.currentThread().isInterrupted()) {
+        nanos = System.nanoTime();
+        LockSupport.parkNanos(resolutionNanos);
+      }
+    }
+  }
+
+  /**
+   * Ticker which only moves when told so, for deterministic tests of time-dependent code.
+   */
+  public static class ManualTicker extends Ticker {
+    protected final AtomicLong nanos = new AtomicLong();
+
+    public long read() {
+      return nanos.get();
+    }
+
+    public ManualTicker advance(final long time, final TimeUnit unit) {
+      nanos.addAndGet(unit.toNanos(time));
+      return this;
+    }
+
+    public ManualTicker set(final long time, final TimeUnit unit) {
+      nanos.set(unit.toNanos(time));
+      return this;
+    }
+  }
+}
@@ -0,0 +1,301 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.eventBroadcast;
+
+import org.akraievoy.base.Die;
+import org.akraievoy.base.Executors;
+import org.akraievoy.base.Startable;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers events of an {@link EventBroadcast} on dedicated dispatcher threads.
+ * <p/>
+ * Each listener is served by one dispatcher only, which receives events via its own bounded queue,
+ * so every listener sees events in the order they were fired.  Dispatchers drain their queues
+ * in batches and hand each listener all of the batched events in a row.
+ * <p/>
+ * Calls through the async broadcast always return <code>null</code> or primitive defaults.
+ * <p/>
+ * Events fired before {@link #start()} are queued, events fired after {@link #stop()} are dropped,
+ * or delivered on the firing thread with {@link Backpressure#CALLER_RUNS}.
+ */
+public class AsyncDelivery<EventSpec> implements Startable {
+  /**
+   * How often a thread blocked on a full queue checks whether the dispatcher is still running.
+   */
+  static final long BLOCK_RECHECK_MILLIS = 50;
+
+  /**
+   * What the firing thread does when a dispatcher queue is full.
+   */
+  public static enum Backpressure {
+    /**
+     * Wait for the dispatcher to free some space, or skip the event if the dispatcher is not running.
+     */
+    BLOCK,
+    /**
+     * Skip the event for the listeners of that dispatcher.
+     */
+    DROP,
+    /**
+     * Deliver the event to the listeners of that dispatcher on the firing thread,
+     * overtaking the events still queued for them.
+     */
+    CALLER_RUNS
+  }
+
+  protected final EventBroadcast<EventSpec> parent;
+  protected final Backpressure backpressure;
+  protected final int batchSize;
+  protected final Dispatcher[] dispatchers;
+
+  protected final Object stateMutex = new Object();
+  protected boolean started;
+  protected volatile boolean stopped;
+
+  /**
+   * @param parent        to take listeners from
+   * @param dispatchers   number of dispatcher threads
+   * @param queueCapacity number of events queued for each of the dispatchers
+   * @param backpressure  what to do on queue overflow
+   * @param batchSize     max events delivered in a row, 1 to disable batching
+   */
+  public AsyncDelivery(
+      final EventBroadcast<EventSpec> parent,
+      final int dispatchers, final int queueCapacity, final Backpressure backpressure, final int batchSize
+  ) {
+    Die.ifFalse("dispatchers > 0", dispatchers > 0);
+    Die.ifFalse("batchSize > 0", batchSize > 0);
+
+    this.parent = parent;
+    this.backpressure = backpressure;
+    this.batchSize = batchSize;
+    this.dispatchers = new Dispatcher[dispatchers];
+    for (int i = 0; i < dispatchers; i++) {
+      this.dispatchers[i] = new Dispatcher(this, i, queueCapacity);
+    }
+  }
+
+  @SuppressWarnings({"unchecked"})
+  public EventSpec getBroadcast(Class<EventSpec> classRef) {
+    return (EventSpec) Proxy.newProxyInstance(
+        EventBroadcast.class.getClassLoader(),
+        new Class<?>[]{classRef},
+        new InvocationHandlerAsync<EventSpec>(this)
+    );
+  }
+
+  /**
+   * Starts the dispatchers, unless already started: restarting after {@link #stop()}
+   * first waits for the previous dispatcher threads to deliver what's left in their queues.
+   */
+  public void start() {
+    synchronized (stateMutex) {
+      if (started) {
+        return;
+      }
+
+      final Executors.ThreadFactory threadFactory = new Executors.ThreadFactory(true, "event dispatcher");
+      for (Dispatcher dispatcher : dispatchers) {
+        dispatcher.start(threadFactory);
+      }
+      started = true;
+      stopped = false;
+    }
+  }
+
+  /**
+   * Dispatchers deliver the events already queued, then exit.
+   */
+  public void stop() {
+    synchronized (stateMutex) {
+      stopped = true;
+      if (!started) {
+        return;
+      }
+
+      for (Dispatcher dispatcher : dispatchers) {
+        dispatcher.stop();
+      }
+      started = false;
+    }
+  }
+
+  void fire(final Method method, final Object[] args) {
+    final Invocation invocation = new Invocation(method, args);
+
+    if (stopped) {
+      //  no dispatcher is going to drain the queues anymore
+      if (backpressure == Backpressure.CALLER_RUNS) {
+        for (Dispatcher dispatcher : dispatchers) {
+          dispatcher.deliver(invocation);
+        }
+      } else {
+        parent.getLog().warn("delivery stopped, dropped '" + method.getName() + "'");
+      }
+      return;
+    }
+
+    for (Dispatcher dispatcher : dispatchers) {
+      switch (backpressure) {
+        case BLOCK:
+          try {
+            while (!dispatcher.queue.offer(invocation, BLOCK_RECHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+              if (!dispatcher.isRunning()) {
+                //  nothing drains the queue before start() or after stop()
+                parent.getLog().warn("dispatcher stopped, dropped '" + method.getName() + "' for dispatcher #" + dispatcher.index);
+                break;
+              }
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            parent.getLog().warn("interrupted, dropped '" + method.getName() + "' for dispatcher #" + dispatcher.index);
+          }
+          break;
+        case DROP:
+          if (!dispatcher.queue.offer(invocation)) {
+            parent.getLog().warn("queue full, dropped '" + method.getName() + "' for dispatcher #" + dispatcher.index);
+          }
+          break;
+        case CALLER_RUNS:
+          if (!dispatcher.queue.offer(invocation)) {
+            dispatcher.deliver(invocation);
+          }
+          break;
+        default:
+          throw Die.unexpected("backpressure", backpressure);
+      }
+    }
+  }
+
+  static class Invocation {
+    final Method method;
+    final Object[] args;
+
+    Invocation(final Method method, final Object[] args) {
+      this.method = method;
+      this.args = args;
+    }
+  }
+
+  static class Dispatcher implements Runnable {
+    final AsyncDelivery<?> owner;
+    final int index;
+    final BlockingQueue<Invocation> queue;
+    final List<Invocation> batch = new ArrayList<Invocation>();
+
+    volatile Thread thread;
+
+    Dispatcher(final AsyncDelivery<?> owner, final int index, final int queueCapacity) {
+      this.owner = owner;
+      this.index = index;
+      this.queue = new ArrayBlockingQueue<Invocation>(queueCapacity);
+    }
+
+    void start(final Executors.ThreadFactory threadFactory) {
+      final Thread previous = thread;
+      if (previous != null) {
+        //  never have two threads consume the same queue
+        try {
+          previous.join();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("interrupted while waiting for dispatcher #" + index + " to stop", e);
+        }
+      }
+
+      final Thread started = threadFactory.newThread(this);
+      thread = started;
+      started.start();
+    }
+
+    void stop() {
+      final Thread dispatcherThread = thread;
+      if (dispatcherThread != null) {
+        dispatcherThread.interrupt();
+      }
+    }
+
+    boolean isRunning() {
+      return thread != null;
+    }
+
+    public void run() {
+      try {
+        while (!Thread.currentThread().isInterrupted()) {
+          batch.add(queue.take());
+          queue.drainTo(batch, owner.batchSize - 1);
+          deliver(batch);
+          batch.clear();
+        }
+      } catch (InterruptedException e) {
+        //  stopped
+      } finally {
+        batch.clear();
+        queue.drainTo(batch);
+        deliver(batch);
+        batch.clear();
+        if (thread == Thread.currentThread()) {
+          thread = null;
+        }
+      }
+    }
+
+    void deliver(final Invocation invocation) {
+      for (Object listener : owner.parent.listeners) {
+        if (owns(listener)) {
+          deliver(listener, invocation);
+        }
+      }
+    }
+
+    void deliver(final List<Invocation> invocations) {
+      for (Object listener : owner.parent.listeners) {
+        if (owns(listener)) {
+          for (Invocation invocation : invocations) {
+            deliver(listener, invocation);
+          }
+        }
+      }
+    }
+
+    boolean owns(final Object listener) {
+      final int dispatcherCount = owner.dispatchers.length;
+      return dispatcherCount == 1 || (System.identityHashCode(listener) & Integer.MAX_VALUE) % dispatcherCount == index;
+    }
+
+    void deliver(final Object listener, final Invocation invocation) {
+      try {
+        InvocationHandlerBroadcast.deliver(listener, invocation.method, invocation.args);
+      } catch (InvocationTargetException e) {
+        owner.parent.getLog().warn("failed in '" + invocation.method.toGenericString() + "': " + e.getMessage(), e);
+      } catch (RuntimeException e) {
+        owner.parent.getLog().warn("failed to deliver '" + invocation.method.toGenericString() + "': " + e.getMessage(), e);
+      }
+    }
+  }
+}
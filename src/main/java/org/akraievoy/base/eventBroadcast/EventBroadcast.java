@@ -18,44 +18,69 @@
 
 package org.akraievoy.base.eventBroadcast;
 
+import com.google.common.collect.ObjectArrays;
+import org.akraievoy.base.ObjArrays;
+import org.akraievoy.base.proxies.ProxyGenerator;
+import org.akraievoy.base.proxies.Targets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
- * Simple reflection-based event broadcasting, couple of goodies related to robustness, reporting and return values.
+ * Simple event broadcasting, couple of goodies related to robustness, reporting and return values.
+ * <p/>
+ * Listeners are kept in a copy-on-write array: events are dispatched without any locking,
+ * listeners added or removed during dispatch take effect from the next event on.
+ * <p/>
+ * Broadcast proxy is generated to call the listeners directly, reflection is used only
+ * if the event interface can't be proxied that way.
  */
 public class EventBroadcast<EventSpec> {
   private static final Logger log = LoggerFactory.getLogger(EventBroadcast.class);
+  private static final Object[] LISTENERS_EMPTY = new Object[0];
 
   final Object structuralMutex = new Object();
-  final List<EventSpec> listeners = new ArrayList<EventSpec>();
+  volatile Object[] listeners = LISTENERS_EMPTY;
 
-  EventSpec broadcast;
+  volatile EventSpec broadcast;
 
   public void add(EventSpec impl) {
     synchronized (structuralMutex) {
-      listeners.add(impl);
+      listeners = ObjectArrays.concat(listeners, impl);
     }
   }
 
   public void remove(EventSpec impl) {
     synchronized (structuralMutex) {
-      listeners.remove(impl);
+      final Object[] current = listeners;
+      final int index = ObjArrays.indexOf(current, impl);
+      if (index < 0) {
+        return;
+      }
+
+      final Object[] updated = new Object[current.length - 1];
+      System.arraycopy(current, 0, updated, 0, index);
+      System.arraycopy(current, index + 1, updated, index, updated.length - index);
+
+      listeners = updated;
     }
   }
 
   @SuppressWarnings({"unchecked"})
   public EventSpec getBroadcast(Class<EventSpec> classRef) {
     if (broadcast == null) {
-      broadcast = (EventSpec) Proxy.newProxyInstance(
-          EventBroadcast.class.getClassLoader(),
-          new Class[]{classRef},
-          new InvocationHandlerBroadcast<EventSpec>(this)
-      );
+      synchronized (structuralMutex) {
+        if (broadcast == null) {
+          final EventSpec generated = ProxyGenerator.broadcast(classRef, new ListenerTargets());
+          broadcast = generated != null ? generated : (EventSpec) Proxy.newProxyInstance(
+              EventBroadcast.class.getClassLoader(),
+              new Class<?>[]{classRef},
+              new InvocationHandlerBroadcast<EventSpec>(this)
+          );
+        }
+      }
     }
 
     return broadcast;
@@ -66,4 +91,14 @@ public class EventBroadcast<EventSpec> {
   protected Logger getLog() {
     return log;
   }
+
+  class ListenerTargets implements Targets {
+    public Object[] getTargets() {
+      return listeners;
+    }
+
+    public void onFailure(Method method, Throwable failure) {
+      getLog().warn("failed in '" + method.toGenericString() + "': " + failure.getMessage(), failure);
+    }
+  }
 }
@@ -0,0 +1,36 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.eventBroadcast;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+
+class InvocationHandlerAsync<EventSpec> implements InvocationHandler {
+  final AsyncDelivery<EventSpec> delivery;
+
+  public InvocationHandlerAsync(AsyncDelivery<EventSpec> delivery) {
+    this.delivery = delivery;
+  }
+
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    delivery.fire(method, args);
+
+    return InvocationHandlerBroadcast.defaultIfNull(method, null);
+  }
+}
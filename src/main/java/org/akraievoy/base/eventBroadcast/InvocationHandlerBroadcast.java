@@ -33,20 +33,28 @@ class InvocationHandlerBroadcast<EventSpec> implements InvocationHandler {
 
   public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
     Object result = null;
-    synchronized (parent.structuralMutex) {
-      for (EventSpec eventSpec : parent.listeners) {
-        try {
-          result = method.invoke(eventSpec, args);
-        } catch (IllegalAccessException e) {
-          throw new IllegalStateException("environment is not set up properly", e);
-        } catch (IllegalArgumentException e) {
-          throw new IllegalStateException("should not occur", e);
-        } catch (InvocationTargetException e) {
-          parent.getLog().warn("failed in '" + method.toGenericString() + "': " + e.getMessage(), e);
-        }
+    for (Object eventSpec : parent.listeners) {
+      try {
+        result = deliver(eventSpec, method, args);
+      } catch (InvocationTargetException e) {
+        parent.getLog().warn("failed in '" + method.toGenericString() + "': " + e.getMessage(), e);
       }
     }
 
+    return defaultIfNull(method, result);
+  }
+
+  static Object deliver(Object eventSpec, Method method, Object[] args) throws InvocationTargetException {
+    try {
+      return method.invoke(eventSpec, args);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("environment is not set up properly", e);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalStateException("should not occur", e);
+    }
+  }
+
+  static Object defaultIfNull(Method method, Object result) {
     Class<?> resultType = method.getReturnType();
     if (resultType.isPrimitive() && result == null) {
       return Defaults.defaultValue(resultType);
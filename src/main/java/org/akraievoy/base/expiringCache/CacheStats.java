@@ -0,0 +1,136 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.expiringCache;
+
+import org.akraievoy.base.Format;
+import org.akraievoy.base.expiringCache.ExpiringCache.EvictionCause;
+
+/**
+ * Immutable snapshot of {@link ExpiringCache} statistics.
+ */
+public class CacheStats {
+  public static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, new long[EvictionCause.values().length]);
+
+  protected final long hitCount;
+  protected final long missCount;
+  protected final long loadSuccessCount;
+  protected final long loadFailureCount;
+  protected final long totalLoadTime;
+  protected final long[] evictionCounts;
+
+  public CacheStats(
+      final long hitCount, final long missCount,
+      final long loadSuccessCount, final long loadFailureCount, final long totalLoadTime,
+      final long[] evictionCounts
+  ) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.loadSuccessCount = loadSuccessCount;
+    this.loadFailureCount = loadFailureCount;
+    this.totalLoadTime = totalLoadTime;
+    this.evictionCounts = evictionCounts.clone();
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public long getMissCount() {
+    return missCount;
+  }
+
+  public long getRequestCount() {
+    return hitCount + missCount;
+  }
+
+  public double getHitRate() {
+    final long requestCount = getRequestCount();
+    return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+  }
+
+  public long getLoadSuccessCount() {
+    return loadSuccessCount;
+  }
+
+  public long getLoadFailureCount() {
+    return loadFailureCount;
+  }
+
+  /**
+   * @return nanoseconds spent in {@link ExpiringCache.Creator#create}, including failed calls
+   */
+  public long getTotalLoadTime() {
+    return totalLoadTime;
+  }
+
+  /**
+   * @return average nanoseconds per {@link ExpiringCache.Creator#create} call
+   */
+  public double getAverageLoadPenalty() {
+    final long loadCount = loadSuccessCount + loadFailureCount;
+    return loadCount == 0 ? 0.0 : (double) totalLoadTime / loadCount;
+  }
+
+  public long getEvictionCount(final EvictionCause cause) {
+    return evictionCounts[cause.ordinal()];
+  }
+
+  public long getEvictionCount() {
+    long evictionCount = 0;
+    for (long count : evictionCounts) {
+      evictionCount += count;
+    }
+    return evictionCount;
+  }
+
+  /**
+   * @param earlier snapshot taken before this one
+   * @return counts accumulated since the earlier snapshot
+   */
+  public CacheStats minus(final CacheStats earlier) {
+    final long[] evictionDeltas = new long[evictionCounts.length];
+    for (int i = 0; i < evictionDeltas.length; i++) {
+      evictionDeltas[i] = evictionCounts[i] - earlier.evictionCounts[i];
+    }
+
+    return new CacheStats(
+        hitCount - earlier.hitCount,
+        missCount - earlier.missCount,
+        loadSuccessCount - earlier.loadSuccessCount,
+        loadFailureCount - earlier.loadFailureCount,
+        totalLoadTime - earlier.totalLoadTime,
+        evictionDeltas
+    );
+  }
+
+  public String toString() {
+    final StringBuilder result = new StringBuilder();
+
+    result.append("requests: ").append(getRequestCount());
+    result.append(", hit rate: ").append(Format.format2(getHitRate()));
+    result.append(", loads: ").append(loadSuccessCount);
+    result.append(", failed: ").append(loadFailureCount);
+    result.append(", avg load: ").append(Format.format2(getAverageLoadPenalty() / 1e6)).append(" ms");
+    for (EvictionCause cause : EvictionCause.values()) {
+      result.append(", evicted/").append(cause.name().toLowerCase()).append(": ").append(getEvictionCount(cause));
+    }
+
+    return result.toString();
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.expiringCache;
+
+import org.akraievoy.base.expiringCache.ExpiringCache.EvictionPolicy;
+
+/**
+ * Stock eviction policies for bounded {@link ExpiringCache} instances.
+ */
+public class EvictionPolicies {
+  /**
+   * Share of the capacity given to the admission window of W-TinyLFU, as in the original paper.
+   */
+  public static final double TINY_LFU_WINDOW_SHARE = 0.01;
+
+  private EvictionPolicies() {
+    //	sealed
+  }
+
+  /**
+   * @return policy which always evicts the least recently used entry
+   */
+  public static <K> EvictionPolicy<K> lru() {
+    return new Lru<K>();
+  }
+
+  /**
+   * W-TinyLFU: recent entries get into a small LRU window, but to enter the main space
+   * they have to be accessed more frequently than the main space's LRU victim.
+   *
+   * @param expectedSize expected number of entries, to size the frequency sketch
+   * @return frequency-aware admission policy, not to be shared between caches
+   */
+  public static <K> EvictionPolicy<K> tinyLfu(final int expectedSize) {
+    return new TinyLfu<K>(expectedSize);
+  }
+
+  static class Lru<K> implements EvictionPolicy<K> {
+    public double getWindowShare() {
+      return 0;
+    }
+
+    public void recordAccess(K key) {
+      //	recency is tracked by the cache itself
+    }
+
+    public boolean admit(K candidate, K victim) {
+      return true;
+    }
+  }
+
+  static class TinyLfu<K> implements EvictionPolicy<K> {
+    final FrequencySketch sketch;
+
+    TinyLfu(final int expectedSize) {
+      sketch = new FrequencySketch(expectedSize);
+    }
+
+    public double getWindowShare() {
+      return TINY_LFU_WINDOW_SHARE;
+    }
+
+    public void recordAccess(K key) {
+      sketch.increment(key.hashCode());
+    }
+
+    public boolean admit(K candidate, K victim) {
+      return sketch.frequency(candidate.hashCode()) > sketch.frequency(victim.hashCode());
+    }
+  }
+}
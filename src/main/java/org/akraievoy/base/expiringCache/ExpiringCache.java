@@ -18,79 +18,743 @@
 
 package org.akraievoy.base.expiringCache;
 
-import java.util.ArrayList;
-import java.util.LinkedHashMap;
-import java.util.List;
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import org.akraievoy.base.Die;
+import org.akraievoy.base.Tickers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe cache with entries expiring after <code>validTime</code> millis without access.
+ * Keys must not be <code>null</code>: the methods taking a key reject it with <code>IllegalStateException</code>, as {@link Die#ifNull} does.
+ * <p/>
+ * Lookups go straight to a concurrent map, while the access order is kept in a linked list,
+ * so expiry only ever inspects the already-expired head of that list.  Reads are recorded into
+ * a lossy buffer and replayed in batches by whichever thread manages to grab the eviction lock,
+ * each operation performs a bounded amount of such cleanup.
+ * <p/>
+ * By default concurrent misses on the same key share a single {@link Creator#create} call,
+ * see {@link #setSingleFlight(boolean)} and {@link #setLoadFailure(LoadFailure)}.
+ * <p/>
+ * Optionally the cache is bounded by entry count or total weight, with victims picked
+ * by an {@link EvictionPolicy}: plain LRU by default or W-TinyLFU, see {@link EvictionPolicies}.
+ * <p/>
+ * With {@link #setRefresh(int, Executor)} entries older than the refresh time are reloaded
+ * in background upon access, while the current value is still being served.
+ * <p/>
+ * With {@link #setRecordStats(boolean)} the cache counts hits, misses, loads and evictions,
+ * see {@link #getStats()} and {@link StatsReporter}.
+ * <p/>
+ * Time is read from a {@link Ticker}: use {@link Tickers#coarse()} to make expiry checks
+ * on the hot path a single volatile read, or a {@link Tickers.ManualTicker} in tests.
+ * <p/>
+ * With {@link #setOffHeapTier(OffHeapTier, int)} entries evicted due to size, as well as the heavy
+ * ones, are kept serialized outside of the java heap, and promoted back to heap upon access.
+ */
 public class ExpiringCache<K, V> {
+  private static final Logger log = LoggerFactory.getLogger(ExpiringCache.class);
+
   public static interface Creator<K, V> {
     V create(K key);
   }
 
-  final LinkedHashMap<K, V> cache = new LinkedHashMap<K, V>();
-  final LinkedHashMap<K, Long> accessTimes = new LinkedHashMap<K, Long>();
+  /**
+   * What the callers sharing a single-flight load see when {@link Creator#create} throws.
+   */
+  public static enum LoadFailure {
+    /**
+     * The failure is rethrown to the loading caller and to every caller waiting on it.
+     */
+    PROPAGATE,
+    /**
+     * The failure is rethrown to the loading caller only, the waiting callers start a fresh load.
+     */
+    RETRY,
+    /**
+     * The failure is logged, every caller sharing the load gets <code>null</code>, nothing is cached.
+     */
+    IGNORE
+  }
+
+  public static interface Weigher<K, V> {
+    /**
+     * @return non-negative weight of the entry, in units of {@link ExpiringCache#setMaximumWeight}
+     */
+    int weigh(K key, V value);
+  }
+
+  public static enum EvictionCause {
+    EXPIRED,
+    SIZE
+  }
+
+  public static interface EvictionListener<K, V> {
+    /**
+     * Called by one of the threads using the cache, outside of any cache locks.
+     */
+    void onEviction(K key, V value, EvictionCause cause);
+  }
+
+  /**
+   * Decides which entries stay once the cache is over its maximum weight.
+   * <p/>
+   * New entries are first kept in the admission window, entries leaving the window become
+   * candidates for the main space and compete with its least recently used entry.
+   * All of the methods are called while holding the eviction lock of the cache.
+   */
+  public static interface EvictionPolicy<K> {
+    /**
+     * @return share of the maximum weight reserved for the admission window, zero for none
+     */
+    double getWindowShare();
+
+    void recordAccess(K key);
+
+    /**
+     * @return true to evict the victim and keep the candidate, false to evict the candidate
+     */
+    boolean admit(K candidate, K victim);
+  }
+
+  /**
+   * Upper bound on expired entries evicted by a single get/set, {@link #pack()} is not bounded.
+   */
+  static final int EXPIRY_BUDGET = 16;
+
+  final ConcurrentHashMap<K, Node<K, V>> cache = new ConcurrentHashMap<K, Node<K, V>>();
+  final ReentrantLock evictionLock = new ReentrantLock();
+  final ReadBuffer<Node<K, V>> readBuffer = new ReadBuffer<Node<K, V>>();
+  final ConcurrentHashMap<K, FutureTask<V>> loading = new ConcurrentHashMap<K, FutureTask<V>>();
+  final ConcurrentLinkedQueue<Node<K, V>> evicted = new ConcurrentLinkedQueue<Node<K, V>>();
   final Creator<K, V> creator;
   final int validTime;
 
+  //  configured before the cache is shared between threads
+  boolean singleFlight = true;
+  LoadFailure loadFailure = LoadFailure.PROPAGATE;
+  long maximumWeight = Long.MAX_VALUE;
+  long windowMaximum = Long.MAX_VALUE;
+  Weigher<K, V> weigher;
+  EvictionPolicy<K> evictionPolicy = EvictionPolicies.lru();
+  EvictionListener<K, V> evictionListener;
+  int refreshTime;
+  Executor refreshExecutor;
+  StatsCounter stats;
+  Ticker ticker = Tickers.nano();
+  OffHeapTier<K, V> offHeapTier;
+  int offHeapWeight = Integer.MAX_VALUE;
+
+  //  sentinels of the access-ordered circular lists and their weights, guarded by evictionLock
+  final Node<K, V> window = Node.sentinel();
+  final Node<K, V> order = Node.sentinel();
+  long windowWeight;
+  long weight;
+
+  final ReadBuffer.Visitor<Node<K, V>> reorder = new ReadBuffer.Visitor<Node<K, V>>() {
+    public void visit(Node<K, V> node) {
+      if (node.isLinked()) {
+        evictionPolicy.recordAccess(node.key);
+        moveToTail(node);
+      }
+    }
+  };
+
   public ExpiringCache(final Creator<K, V> creator, final int validTime) {
     this.creator = creator;
     this.validTime = validTime;
   }
 
-  public void pack() {
-    final List<K> invalidated = new ArrayList<K>();
-    final long currentMillis = getCurrentMillis();
+  /**
+   * @param singleFlight true to have concurrent misses on the same key wait for one shared load
+   */
+  public void setSingleFlight(final boolean singleFlight) {
+    this.singleFlight = singleFlight;
+  }
 
-    for (K cachedStateId : cache.keySet()) {
-      final Long accessTime = accessTimes.get(cachedStateId);
-      if (accessTime == null || accessTime + validTime < currentMillis) {
-        invalidated.add(cachedStateId);
-      }
+  public void setLoadFailure(final LoadFailure loadFailure) {
+    this.loadFailure = loadFailure;
+  }
+
+  public void setMaximumSize(final long maximumSize) {
+    setMaximumWeight(maximumSize, null);
+  }
+
+  /**
+   * @param maximumWeight total weight of the entries to keep, evicting those in excess
+   * @param weigher       to compute entry weights, <code>null</code> to weigh every entry as one
+   */
+  public void setMaximumWeight(final long maximumWeight, final Weigher<K, V> weigher) {
+    if (maximumWeight < 0) {
+      throw Die.unexpected("maximumWeight", maximumWeight);
+    }
+
+    this.maximumWeight = maximumWeight;
+    this.weigher = weigher;
+    updateWindowMaximum();
+  }
+
+  public void setEvictionPolicy(final EvictionPolicy<K> evictionPolicy) {
+    this.evictionPolicy = evictionPolicy;
+    updateWindowMaximum();
+  }
+
+  public void setEvictionListener(final EvictionListener<K, V> evictionListener) {
+    this.evictionListener = evictionListener;
+  }
+
+  /**
+   * @param refreshTime millis since the value was created to reload it upon access, zero to disable
+   * @param executor    to run reloads, for example {@link org.akraievoy.base.Executors#scheduledExecutor}
+   */
+  public void setRefresh(final int refreshTime, final Executor executor) {
+    if (refreshTime > 0) {
+      Die.ifNull("executor", executor);
+    }
+
+    this.refreshTime = refreshTime;
+    this.refreshExecutor = executor;
+  }
+
+  public void setTicker(final Ticker ticker) {
+    this.ticker = ticker;
+  }
+
+  /**
+   * @param offHeapTier   to keep entries evicted due to size, dedicated to this cache
+   * @param offHeapWeight entries at least this heavy are kept off-heap only, regardless of eviction
+   */
+  public void setOffHeapTier(final OffHeapTier<K, V> offHeapTier, final int offHeapWeight) {
+    offHeapTier.validTime = validTime;
+    this.offHeapTier = offHeapTier;
+    this.offHeapWeight = offHeapWeight;
+  }
+
+  public void setRecordStats(final boolean recordStats) {
+    this.stats = recordStats ? new StatsCounter() : null;
+  }
+
+  /**
+   * @return statistics recorded so far, all zeroes unless enabled via {@link #setRecordStats(boolean)}
+   */
+  public CacheStats getStats() {
+    final StatsCounter statsCounter = stats;
+    return statsCounter == null ? CacheStats.EMPTY : statsCounter.snapshot();
+  }
+
+  void updateWindowMaximum() {
+    if (maximumWeight == Long.MAX_VALUE) {
+      windowMaximum = Long.MAX_VALUE;
+      return;
     }
 
-    cache.keySet().removeAll(invalidated);
-    accessTimes.keySet().removeAll(invalidated);
+    final double windowShare = evictionPolicy.getWindowShare();
+    windowMaximum = windowShare > 0 ? Math.max(1, (long) (maximumWeight * windowShare)) : 0;
+  }
+
+  /**
+   * Evicts all of the expired entries.
+   */
+  public void pack() {
+    evictionLock.lock();
+    try {
+      readBuffer.drain(reorder);
+      final long now = getCurrentMillis();
+      expireAll(window, now);
+      expireAll(order, now);
+    } finally {
+      evictionLock.unlock();
+    }
+    drainEvicted();
   }
 
   public V get(K key) {
-    pack();
+    Die.ifNull("key", key);
+    final long now = getCurrentMillis();
+    final Node<K, V> node = cache.get(key);
 
-    final V cached = cache.get(key);
-    final V toReturn;
+    if (node != null && !isExpired(node, now)) {
+      final V cached = node.value;
+      node.accessTime = now;
+      if (stats != null) {
+        stats.hits.increment();
+      }
+      if (readBuffer.offer(node)) {
+        tryMaintenance(now);
+      }
+      if (refreshTime > 0 && node.writeTime + refreshTime <= now) {
+        refresh(node);
+      }
+      return cached;
+    }
 
-    if (cached != null) {
-      toReturn = cached;
-    } else {
-      toReturn = creator.create(key);
-      cache.put(key, toReturn);
+    if (offHeapTier != null) {
+      final V offHeap = offHeapTier.get(key, now);
+      if (offHeap != null) {
+        if (stats != null) {
+          stats.hits.increment();
+        }
+        if (weigh(key, offHeap) < offHeapWeight) {
+          put(key, offHeap, now);
+        }
+        return offHeap;
+      }
     }
 
-    accessTimes.put(key, getCurrentMillis());
+    if (stats != null) {
+      stats.misses.increment();
+    }
+
+    if (!singleFlight) {
+      final V created = create(key);
+      //  creation might take a while, the new entry is accessed right now
+      put(key, created, getCurrentMillis());
 
-    return toReturn;
+      return created;
+    }
+
+    return load(key, now);
+  }
+
+  /**
+   * Reloads the value in background, keeps serving the current one (if any) meanwhile.
+   * Without an executor configured via {@link #setRefresh(int, Executor)} reloads synchronously.
+   */
+  public void refresh(final K key) {
+    Die.ifNull("key", key);
+    final Node<K, V> node = cache.get(key);
+    if (node != null) {
+      refresh(node);
+      return;
+    }
+
+    final Runnable load = new Runnable() {
+      public void run() {
+        get(key);
+      }
+    };
+
+    if (refreshExecutor == null) {
+      load.run();
+    } else {
+      refreshExecutor.execute(load);
+    }
   }
 
   public void remove(K key) {
-    cache.remove(key);
-    accessTimes.remove(key);
+    Die.ifNull("key", key);
+    evictionLock.lock();
+    try {
+      final Node<K, V> node = cache.remove(key);
+      if (node != null) {
+        unlink(node);
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+
+    if (offHeapTier != null) {
+      offHeapTier.remove(key);
+    }
   }
 
   public void shutdown() {
-    cache.clear();
-    accessTimes.clear();
+    evictionLock.lock();
+    try {
+      readBuffer.drain(reorder);
+      cache.clear();
+      while (window.next != window) {
+        unlink(window.next);
+      }
+      while (order.next != order) {
+        unlink(order.next);
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+
+    if (offHeapTier != null) {
+      offHeapTier.clear();
+    }
   }
 
   public void set(K key, V value) {
-    cache.put(key, value);
-    accessTimes.put(key, getCurrentMillis());
+    Die.ifNull("key", key);
+    put(key, value, getCurrentMillis());
   }
 
   protected long getCurrentMillis() {
-    return System.currentTimeMillis();
+    return Tickers.millis(ticker);
   }
 
+  /**
+   * Note that this evicts all of the expired entries first, see {@link #getEstimatedSize()}.
+   */
   public int getSize() {
     pack();
     return cache.size();
   }
+
+  /**
+   * @return number of entries, possibly including some already expired
+   */
+  public int getEstimatedSize() {
+    return cache.size();
+  }
+
+  void put(final K key, final V value, final long now) {
+    //  nulls are never cached, same as before
+    final int entryWeight = value == null ? 0 : weigh(key, value);
+    final boolean offHeap = offHeapTier != null && value != null && entryWeight >= offHeapWeight;
+    final Node<K, V> node = value == null || offHeap ? null : new Node<K, V>(key, value, now, entryWeight);
+
+    if (offHeap) {
+      offHeapTier.put(key, value, now);
+    } else if (offHeapTier != null) {
+      offHeapTier.remove(key);
+    }
+
+    evictionLock.lock();
+    try {
+      final Node<K, V> prior;
+      if (node == null) {
+        prior = cache.remove(key);
+      } else {
+        prior = cache.put(key, node);
+        evictionPolicy.recordAccess(key);
+        linkLast(window, node);
+      }
+
+      if (prior != null) {
+        unlink(prior);
+      }
+
+      maintenance(now);
+    } finally {
+      evictionLock.unlock();
+    }
+    drainEvicted();
+  }
+
+  void refresh(final Node<K, V> node) {
+    if (!node.startRefresh()) {
+      return;
+    }
+
+    final Runnable reload = new Runnable() {
+      public void run() {
+        try {
+          reload(node);
+        } catch (RuntimeException e) {
+          log.warn("failed to refresh '" + node.key + "': " + e.getMessage(), e);
+        } finally {
+          node.refreshing = 0;
+        }
+      }
+    };
+
+    if (refreshExecutor == null) {
+      reload.run();
+      return;
+    }
+
+    try {
+      refreshExecutor.execute(reload);
+    } catch (RejectedExecutionException e) {
+      node.refreshing = 0;
+      log.warn("refresh of '" + node.key + "' rejected: " + e.getMessage());
+    }
+  }
+
+  void reload(final Node<K, V> node) {
+    final V refreshed = create(node.key);
+    if (refreshed == null) {
+      return;
+    }
+
+    final long now = getCurrentMillis();
+    final int refreshedWeight = weigh(node.key, refreshed);
+
+    evictionLock.lock();
+    try {
+      if (!node.isLinked()) {
+        //  evicted, removed or replaced while we've been reloading
+        return;
+      }
+
+      node.value = refreshed;
+      node.writeTime = now;
+
+      weight += refreshedWeight - node.weight;
+      if (node.windowed) {
+        windowWeight += refreshedWeight - node.weight;
+      }
+      node.weight = refreshedWeight;
+
+      maintenance(now);
+    } finally {
+      evictionLock.unlock();
+    }
+    drainEvicted();
+  }
+
+  int weigh(final K key, final V value) {
+    if (weigher == null) {
+      return 1;
+    }
+
+    final int entryWeight = weigher.weigh(key, value);
+    if (entryWeight < 0) {
+      throw Die.unexpected("weight of '" + key + "'", entryWeight);
+    }
+
+    return entryWeight;
+  }
+
+  V load(final K key, final long now) {
+    while (true) {
+      final FutureTask<V> loader = new FutureTask<V>(new Callable<V>() {
+        public V call() throws Exception {
+          return create(key);
+        }
+      });
+
+      final FutureTask<V> inFlight = loading.putIfAbsent(key, loader);
+      if (inFlight == null) {
+        try {
+          final Node<K, V> node = cache.get(key);
+          if (node != null && !isExpired(node, now)) {
+            //  some other load completed right before we've registered ours
+            return node.value;
+          }
+
+          loader.run();
+          final V created = await(key, loader);
+          put(key, created, getCurrentMillis());
+
+          return created;
+        } catch (ExecutionException e) {
+          return failed(key, e.getCause());
+        } finally {
+          loading.remove(key, loader);
+        }
+      }
+
+      try {
+        return await(key, inFlight);
+      } catch (ExecutionException e) {
+        if (loadFailure != LoadFailure.RETRY) {
+          return failed(key, e.getCause());
+        }
+        //  loop and either wait for the next load or become the loader ourselves
+      }
+    }
+  }
+
+  V create(final K key) {
+    if (stats == null) {
+      return creator.create(key);
+    }
+
+    final long start = ticker.read();
+    boolean success = false;
+    try {
+      final V created = creator.create(key);
+      success = true;
+      return created;
+    } finally {
+      stats.recordLoad(success, ticker.read() - start);
+    }
+  }
+
+  V await(final K key, final FutureTask<V> loader) throws ExecutionException {
+    try {
+      return loader.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while waiting for '" + key + "' to load", e);
+    }
+  }
+
+  V failed(final K key, final Throwable cause) {
+    if (loadFailure == LoadFailure.IGNORE) {
+      log.warn("failed to create '" + key + "': " + cause.getMessage(), cause);
+      return null;
+    }
+
+    throw Throwables.propagate(cause);
+  }
+
+  boolean isExpired(final Node<K, V> node, final long now) {
+    return node.accessTime + validTime < now;
+  }
+
+  void tryMaintenance(final long now) {
+    if (evictionLock.tryLock()) {
+      try {
+        maintenance(now);
+      } finally {
+        evictionLock.unlock();
+      }
+      drainEvicted();
+    }
+  }
+
+  /**
+   * Demotes entries evicted due to size to the off-heap tier and notifies the listener.
+   */
+  void drainEvicted() {
+    if (evictionListener == null && offHeapTier == null) {
+      return;
+    }
+
+    Node<K, V> node;
+    while ((node = evicted.poll()) != null) {
+      if (offHeapTier != null && node.evictionCause == EvictionCause.SIZE && !cache.containsKey(node.key)) {
+        try {
+          offHeapTier.put(node.key, node.value, node.accessTime);
+        } catch (RuntimeException e) {
+          log.warn("failed to move '" + node.key + "' off-heap: " + e.getMessage(), e);
+        }
+      }
+
+      if (evictionListener != null) {
+        try {
+          evictionListener.onEviction(node.key, node.value, node.evictionCause);
+        } catch (RuntimeException e) {
+          log.warn("eviction listener failed on '" + node.key + "': " + e.getMessage(), e);
+        }
+      }
+    }
+  }
+
+  //  the methods below require evictionLock to be held
+
+  void maintenance(final long now) {
+    readBuffer.drain(reorder);
+    expire(window, now, EXPIRY_BUDGET);
+    expire(order, now, EXPIRY_BUDGET);
+    evict();
+  }
+
+  /**
+   * Note that the main list is only roughly ordered by access time as it receives entries
+   * leaving the admission window: such entries might linger past their expiry until
+   * the next {@link #expireAll}, yet they are never returned by {@link #get}.
+   */
+  void expire(final Node<K, V> list, final long now, final int budget) {
+    for (int evicted = 0; evicted < budget && list.next != list; evicted++) {
+      final Node<K, V> head = list.next;
+
+      if (head.orderTime != head.accessTime) {
+        //  the read buffer dropped the reorder for this one, catch up now
+        moveToTail(head);
+        continue;
+      }
+
+      if (!isExpired(head, now)) {
+        return;
+      }
+
+      evict(head, EvictionCause.EXPIRED);
+    }
+  }
+
+  /**
+   * Scans the whole list, as its order can't be relied upon to stop early.
+   */
+  void expireAll(final Node<K, V> list, final long now) {
+    Node<K, V> node = list.next;
+    while (node != list) {
+      final Node<K, V> next = node.next;
+      if (isExpired(node, now)) {
+        evict(node, EvictionCause.EXPIRED);
+      }
+      node = next;
+    }
+  }
+
+  void evict() {
+    if (maximumWeight == Long.MAX_VALUE) {
+      return;
+    }
+
+    while (windowWeight > windowMaximum) {
+      final Node<K, V> candidate = window.next;
+      unlink(candidate);
+      linkLast(order, candidate);
+
+      while (weight > maximumWeight) {
+        final Node<K, V> victim = order.next;
+        if (victim == candidate || !evictionPolicy.admit(candidate.key, victim.key)) {
+          evict(candidate, EvictionCause.SIZE);
+          break;
+        }
+
+        evict(victim, EvictionCause.SIZE);
+      }
+    }
+
+    while (weight > maximumWeight) {
+      evict(order.next != order ? order.next : window.next, EvictionCause.SIZE);
+    }
+  }
+
+  void evict(final Node<K, V> node, final EvictionCause cause) {
+    cache.remove(node.key, node);
+    unlink(node);
+
+    if (stats != null) {
+      stats.recordEviction(cause);
+    }
+    if (evictionListener != null || offHeapTier != null) {
+      node.evictionCause = cause;
+      evicted.offer(node);
+    }
+  }
+
+  void linkLast(final Node<K, V> list, final Node<K, V> node) {
+    node.orderTime = node.accessTime;
+    node.windowed = list == window;
+    node.prev = list.prev;
+    node.next = list;
+    list.prev.next = node;
+    list.prev = node;
+
+    weight += node.weight;
+    if (node.windowed) {
+      windowWeight += node.weight;
+    }
+  }
+
+  void unlink(final Node<K, V> node) {
+    if (!node.isLinked()) {
+      return;
+    }
+
+    node.prev.next = node.next;
+    node.next.prev = node.prev;
+    node.prev = null;
+    node.next = null;
+
+    weight -= node.weight;
+    if (node.windowed) {
+      windowWeight -= node.weight;
+    }
+  }
+
+  void moveToTail(final Node<K, V> node) {
+    final Node<K, V> list = node.windowed ? window : order;
+    unlink(node);
+    linkLast(list, node);
+  }
 }
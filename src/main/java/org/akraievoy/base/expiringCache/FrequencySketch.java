@@ -0,0 +1,111 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.expiringCache;
+
+/**
+ * Count-min sketch of 4-bit counters, halved periodically so that old popularity fades out.
+ * <p/>
+ * Each long of the table packs 16 counters, each key maps to four counters in four rows.
+ * Not thread-safe: used under the eviction lock of the cache.
+ *
+ * @see <a href="http://arxiv.org/abs/1512.00727">TinyLFU: A Highly Efficient Cache Admission Policy</a>
+ */
+final class FrequencySketch {
+  static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+  };
+  static final long RESET_MASK = 0x7777777777777777L;
+  static final long ONE_MASK = 0x1111111111111111L;
+
+  final long[] table;
+  final int tableMask;
+  final int sampleSize;
+  int additions;
+
+  FrequencySketch(final int expectedSize) {
+    int length = 8;
+    while (length < expectedSize && length < (1 << 30)) {
+      length <<= 1;
+    }
+
+    table = new long[length];
+    tableMask = length - 1;
+    sampleSize = 10 * length;
+  }
+
+  int frequency(final int hashCode) {
+    final int hash = spread(hashCode);
+    final int start = (hash & 3) << 2;
+
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      final int count = (int) ((table[indexOf(hash, i)] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+
+    return frequency;
+  }
+
+  void increment(final int hashCode) {
+    final int hash = spread(hashCode);
+    final int start = (hash & 3) << 2;
+
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+
+    if (added && ++additions == sampleSize) {
+      reset();
+    }
+  }
+
+  boolean incrementAt(final int index, final int counter) {
+    final int offset = counter << 2;
+    final long mask = 0xfL << offset;
+    if ((table[index] & mask) != mask) {
+      table[index] += 1L << offset;
+      return true;
+    }
+
+    return false;
+  }
+
+  void reset() {
+    int oddCounters = 0;
+    for (int i = 0; i < table.length; i++) {
+      oddCounters += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+
+    additions = (additions >>> 1) - (oddCounters >>> 2);
+  }
+
+  int indexOf(final int hash, final int row) {
+    long rowHash = SEEDS[row] * hash;
+    rowHash += rowHash >>> 32;
+    return (int) rowHash & tableMask;
+  }
+
+  static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.expiringCache;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Cache entry, also a link in the access-ordered list of the owning cache.
+ */
+final class Node<K, V> {
+  @SuppressWarnings({"rawtypes"})
+  static final AtomicIntegerFieldUpdater<Node> REFRESHING = AtomicIntegerFieldUpdater.newUpdater(Node.class, "refreshing");
+
+  final K key;
+  volatile V value;
+  volatile long accessTime;
+  volatile long writeTime;
+  volatile int refreshing;
+
+  //  guarded by the eviction lock of the owning cache
+  int weight;
+  long orderTime;
+  boolean windowed;
+  Node<K, V> prev;
+  Node<K, V> next;
+
+  //  published to listeners via the queue of evicted nodes
+  ExpiringCache.EvictionCause evictionCause;
+
+  Node(final K key, final V value, final long accessTime, final int weight) {
+    this.key = key;
+    this.value = value;
+    this.accessTime = accessTime;
+    this.writeTime = accessTime;
+    this.weight = weight;
+  }
+
+  /**
+   * @return true if the caller is the one to refresh this entry
+   */
+  boolean startRefresh() {
+    return REFRESHING.compareAndSet(this, 0, 1);
+  }
+
+  static <K, V> Node<K, V> sentinel() {
+    final Node<K, V> sentinel = new Node<K, V>(null, null, 0, 0);
+    sentinel.prev = sentinel;
+    sentinel.next = sentinel;
+    return sentinel;
+  }
+
+  boolean isLinked() {
+    return prev != null;
+  }
+}
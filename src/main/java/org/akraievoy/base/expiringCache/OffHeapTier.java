@@ -0,0 +1,299 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.expiringCache;
+
+import org.akraievoy.base.Die;
+import org.akraievoy.base.dump.Dump;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Second tier of {@link ExpiringCache}, keeping serialized values outside of the java heap.
+ * <p/>
+ * Values are appended to a ring of slabs, either direct buffers or regions of a memory-mapped file,
+ * overwriting the oldest values once the ring is full.  Only the index and expiry metadata are
+ * kept on heap.  All operations lock the tier, while encoding and decoding of values happens
+ * outside of that lock.
+ */
+public class OffHeapTier<K, V> {
+  public static final int MAX_SLAB_SIZE = 1 << 30;
+
+  public static interface Codec<V> {
+    byte[] encode(V value);
+
+    V decode(byte[] bytes);
+  }
+
+  protected final ByteBuffer[] slabs;
+  protected final int slabSize;
+  protected final long capacity;
+  protected final Codec<V> codec;
+
+  protected final ReentrantLock lock = new ReentrantLock();
+  protected final Map<K, Slot<K>> index = new HashMap<K, Slot<K>>();
+  protected final ArrayDeque<Slot<K>> written = new ArrayDeque<Slot<K>>();
+  protected long writePos;
+
+  //  set by the cache this tier is attached to
+  volatile int validTime = Integer.MAX_VALUE;
+
+  /**
+   * @param slabs off-heap buffers of equal capacity, to be used exclusively by this tier
+   * @param codec to (de)serialize the values
+   */
+  public OffHeapTier(final ByteBuffer[] slabs, final Codec<V> codec) {
+    Die.ifFalse("slabs.length > 0", slabs.length > 0);
+
+    this.slabs = slabs.clone();
+    this.slabSize = slabs[0].capacity();
+    this.capacity = (long) slabSize * slabs.length;
+    this.codec = codec;
+
+    for (ByteBuffer slab : slabs) {
+      Die.ifNotEqual("slab capacity", slabSize, slab.capacity());
+    }
+  }
+
+  /**
+   * @param capacity total bytes to allocate in direct buffers, rounded down to whole slabs
+   * @param codec    to (de)serialize the values
+   * @return tier in direct memory, released only once the tier itself is garbage-collected
+   */
+  public static <K, V> OffHeapTier<K, V> direct(final long capacity, final Codec<V> codec) {
+    final int slabSize = slabSize(capacity);
+    final ByteBuffer[] slabs = new ByteBuffer[(int) (capacity / slabSize)];
+    for (int i = 0; i < slabs.length; i++) {
+      slabs[i] = ByteBuffer.allocateDirect(slabSize);
+    }
+
+    return new OffHeapTier<K, V>(slabs, codec);
+  }
+
+  /**
+   * @param file     to map, contents are overwritten and never read back after a restart
+   * @param capacity total bytes to map, rounded down to whole slabs
+   * @param codec    to (de)serialize the values
+   * @return tier in a memory-mapped file
+   * @throws IOException if file could not be mapped
+   */
+  public static <K, V> OffHeapTier<K, V> mapped(
+      final File file, final long capacity, final Codec<V> codec
+  ) throws IOException {
+    final int slabSize = slabSize(capacity);
+    final ByteBuffer[] slabs = new ByteBuffer[(int) (capacity / slabSize)];
+
+    final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength((long) slabSize * slabs.length);
+      final FileChannel channel = raf.getChannel();
+      for (int i = 0; i < slabs.length; i++) {
+        slabs[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) slabSize * i, slabSize);
+      }
+    } finally {
+      //  mappings stay valid after the channel is closed
+      raf.close();
+    }
+
+    return new OffHeapTier<K, V>(slabs, codec);
+  }
+
+  /**
+   * @return codec based on java serialization via {@link Dump}
+   */
+  public static <V extends Serializable> Codec<V> serializing() {
+    return new Codec<V>() {
+      public byte[] encode(V value) {
+        return Dump.dumpObject(value);
+      }
+
+      @SuppressWarnings({"unchecked"})
+      public V decode(byte[] bytes) {
+        return (V) Dump.readObject(bytes);
+      }
+    };
+  }
+
+  static int slabSize(final long capacity) {
+    if (capacity <= 0) {
+      throw Die.unexpected("capacity", capacity);
+    }
+
+    return (int) Math.min(capacity, MAX_SLAB_SIZE);
+  }
+
+  /**
+   * @return true if the value got stored, false if it does not fit into a slab
+   */
+  public boolean put(final K key, final V value, final long accessTime) {
+    final byte[] bytes = codec.encode(value);
+    if (bytes.length > slabSize) {
+      remove(key);
+      return false;
+    }
+
+    lock.lock();
+    try {
+      final Slot<K> prior = index.remove(key);
+      if (prior != null) {
+        prior.live = false;
+      }
+
+      final long offset = claim(bytes.length);
+      final ByteBuffer slab = slabs[(int) (offset / slabSize)].duplicate();
+      slab.position((int) (offset % slabSize));
+      slab.put(bytes);
+
+      final Slot<K> slot = new Slot<K>(key, offset, bytes.length, accessTime);
+      index.put(key, slot);
+      written.addLast(slot);
+    } finally {
+      lock.unlock();
+    }
+
+    return true;
+  }
+
+  /**
+   * @return the value, or null if absent or expired
+   */
+  public V get(final K key, final long now) {
+    final byte[] bytes;
+
+    lock.lock();
+    try {
+      final Slot<K> slot = index.get(key);
+      if (slot == null) {
+        return null;
+      }
+
+      if (slot.accessTime + validTime < now) {
+        index.remove(key);
+        slot.live = false;
+        return null;
+      }
+
+      slot.accessTime = now;
+      bytes = new byte[slot.length];
+      final ByteBuffer slab = slabs[(int) (slot.offset / slabSize)].duplicate();
+      slab.position((int) (slot.offset % slabSize));
+      slab.get(bytes);
+    } finally {
+      lock.unlock();
+    }
+
+    return codec.decode(bytes);
+  }
+
+  public void remove(final K key) {
+    lock.lock();
+    try {
+      final Slot<K> slot = index.remove(key);
+      if (slot != null) {
+        slot.live = false;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void clear() {
+    lock.lock();
+    try {
+      index.clear();
+      written.clear();
+      writePos = 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getSize() {
+    lock.lock();
+    try {
+      return index.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Frees the region for the next write, evicting the oldest slots, requires the lock to be held.
+   *
+   * @return offset of the freed region
+   */
+  long claim(final int length) {
+    final long slabEnd = (writePos / slabSize + 1) * slabSize;
+    if (writePos + length > slabEnd) {
+      //  values never span slabs, skip the rest of this one
+      evictBefore(slabEnd);
+      writePos = slabEnd == capacity ? 0 : slabEnd;
+    }
+
+    evictBefore(writePos + length);
+
+    final long offset = writePos;
+    writePos += length;
+    if (writePos == capacity) {
+      writePos = 0;
+    }
+
+    return offset;
+  }
+
+  /**
+   * The oldest slots are those right after the write position, which we overwrite in that order.
+   */
+  void evictBefore(final long end) {
+    while (!written.isEmpty()) {
+      final Slot<K> oldest = written.peekFirst();
+      if (oldest.offset < writePos || oldest.offset >= end) {
+        return;
+      }
+
+      written.removeFirst();
+      if (oldest.live) {
+        index.remove(oldest.key);
+      }
+    }
+  }
+
+  static class Slot<K> {
+    final K key;
+    final long offset;
+    final int length;
+    long accessTime;
+    boolean live = true;
+
+    Slot(final K key, final long offset, final int length, final long accessTime) {
+      this.key = key;
+      this.offset = offset;
+      this.length = length;
+      this.accessTime = accessTime;
+    }
+  }
+}
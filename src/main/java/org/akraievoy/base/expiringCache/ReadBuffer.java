@@ -0,0 +1,103 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.expiringCache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lossy striped buffer of recent reads: readers never block, the single drainer replays
+ * the reads under the eviction lock.  When a stripe is full the read is simply dropped.
+ */
+final class ReadBuffer<E> {
+  static final int STRIPE_SIZE = 32;
+  static final int STRIPE_MASK = STRIPE_SIZE - 1;
+  static final int DRAIN_THRESHOLD = STRIPE_SIZE / 2;
+
+  //  counters of neighbouring stripes are kept apart to avoid false sharing
+  static final int COUNTER_SPACING = 16;
+
+  public static interface Visitor<E> {
+    void visit(E e);
+  }
+
+  final int stripeMask;
+  final AtomicReferenceArray<E> slots;
+  final AtomicLongArray writes;
+  final AtomicLongArray reads;
+
+  ReadBuffer() {
+    int stripes = 1;
+    while (stripes < Runtime.getRuntime().availableProcessors() * 2) {
+      stripes <<= 1;
+    }
+
+    stripeMask = stripes - 1;
+    slots = new AtomicReferenceArray<E>(stripes * STRIPE_SIZE);
+    writes = new AtomicLongArray(stripes * COUNTER_SPACING);
+    reads = new AtomicLongArray(stripes * COUNTER_SPACING);
+  }
+
+  /**
+   * @param e recently read element
+   * @return true if the buffer asks to be drained
+   */
+  boolean offer(final E e) {
+    final int stripe = (int) Thread.currentThread().getId() & stripeMask;
+    final int counter = stripe * COUNTER_SPACING;
+
+    final long write = writes.get(counter);
+    final long pending = write - reads.get(counter);
+    if (pending >= STRIPE_SIZE) {
+      return true;
+    }
+
+    if (writes.compareAndSet(counter, write, write + 1)) {
+      slots.lazySet(stripe * STRIPE_SIZE + (int) (write & STRIPE_MASK), e);
+    }
+
+    return pending + 1 >= DRAIN_THRESHOLD;
+  }
+
+  /**
+   * Must be called by one thread at a time.
+   */
+  void drain(final Visitor<E> visitor) {
+    for (int stripe = 0; stripe <= stripeMask; stripe++) {
+      final int counter = stripe * COUNTER_SPACING;
+      final long write = writes.get(counter);
+
+      long read = reads.get(counter);
+      while (read < write) {
+        final int index = stripe * STRIPE_SIZE + (int) (read & STRIPE_MASK);
+        final E e = slots.get(index);
+        if (e == null) {
+          //  writer claimed the slot but has not published it yet
+          break;
+        }
+
+        slots.lazySet(index, null);
+        visitor.visit(e);
+        read++;
+      }
+
+      reads.lazySet(counter, read);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.expiringCache;
+
+import org.akraievoy.base.expiringCache.ExpiringCache.EvictionCause;
+import org.akraievoy.base.stripedCounter.StripedCounter;
+
+/**
+ * Live counters of a cache, updated on the hot path without contention.
+ */
+final class StatsCounter {
+  final StripedCounter hits = new StripedCounter();
+  final StripedCounter misses = new StripedCounter();
+  final StripedCounter loadSuccesses = new StripedCounter();
+  final StripedCounter loadFailures = new StripedCounter();
+  final StripedCounter loadTime = new StripedCounter();
+  final StripedCounter[] evictions = new StripedCounter[EvictionCause.values().length];
+
+  StatsCounter() {
+    for (int i = 0; i < evictions.length; i++) {
+      evictions[i] = new StripedCounter();
+    }
+  }
+
+  void recordLoad(final boolean success, final long nanos) {
+    (success ? loadSuccesses : loadFailures).increment();
+    loadTime.add(nanos);
+  }
+
+  void recordEviction(final EvictionCause cause) {
+    evictions[cause.ordinal()].increment();
+  }
+
+  CacheStats snapshot() {
+    final long[] evictionCounts = new long[evictions.length];
+    for (int i = 0; i < evictionCounts.length; i++) {
+      evictionCounts[i] = evictions[i].sum();
+    }
+
+    return new CacheStats(
+        hits.sum(), misses.sum(), loadSuccesses.sum(), loadFailures.sum(), loadTime.sum(), evictionCounts
+    );
+  }
+}
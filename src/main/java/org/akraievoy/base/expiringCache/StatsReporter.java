@@ -0,0 +1,75 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.expiringCache;
+
+import org.akraievoy.base.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Periodically logs statistics of a cache accumulated since the previous report.
+ */
+public class StatsReporter extends Executors.Task {
+  private static final Logger log = LoggerFactory.getLogger(StatsReporter.class);
+
+  protected final ExpiringCache<?, ?> cache;
+  protected final String cacheName;
+  protected final long period;
+
+  protected CacheStats reported = CacheStats.EMPTY;
+
+  /**
+   * @param executor  to schedule reports with
+   * @param cache     to report on, make sure it was created with stats recording enabled
+   * @param cacheName to label reports with
+   * @param period    millis between reports
+   */
+  public StatsReporter(
+      final ScheduledExecutorService executor, final ExpiringCache<?, ?> cache, final String cacheName, final long period
+  ) {
+    super(executor);
+    this.cache = cache;
+    this.cacheName = cacheName;
+    this.period = period;
+  }
+
+  protected long getInitialDelay() {
+    return period;
+  }
+
+  protected long getRestartDelay() {
+    return period;
+  }
+
+  protected String getName() {
+    return "cache stats: " + cacheName;
+  }
+
+  protected void runInternal() {
+    final CacheStats current = cache.getStats();
+    getLog().info("[" + cacheName + "] size: " + cache.getEstimatedSize() + ", " + current.minus(reported));
+    reported = current;
+  }
+
+  protected Logger getLog() {
+    return log;
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.introspect;
+
+import org.akraievoy.base.Die;
+
+import java.lang.reflect.Field;
+
+/**
+ * Resolved and accessible field, reusable across calls and threads.
+ * <p/>
+ * Primitive getters and setters read and write without boxing, they fail with
+ * <code>IllegalArgumentException</code> if the field type can't be widened to/from the primitive.
+ *
+ * @see Introspect#getAccessor(Class, String)
+ */
+public class FieldAccessor {
+  protected final Field field;
+
+  public FieldAccessor(final Field field) {
+    this.field = field;
+    this.field.setAccessible(true);
+  }
+
+  public Field getField() {
+    return field;
+  }
+
+  public String getName() {
+    return field.getName();
+  }
+
+  public Class<?> getType() {
+    return field.getType();
+  }
+
+  public Object get(final Object entityInstance) {
+    try {
+      return field.get(entityInstance);
+    } catch (IllegalAccessException e) {
+      throw Die.unexpected("class.fieldName", describe(), e);
+    }
+  }
+
+  /**
+   * @throws IllegalArgumentException if the value is not assignable to the field
+   */
+  public void set(final Object entityInstance, final Object fieldValue) {
+    try {
+      field.set(entityInstance, fieldValue);
+    } catch (IllegalAccessException e) {
+      throw Die.unexpected("class.fieldName", describe(), e);
+    }
+  }
+
+  public boolean getBoolean(final Object entityInstance) {
+    try {
+      return field.getBoolean(entityInstance);
+    } catch (IllegalAccessException e) {
+      throw Die.unexpected("class.fieldName", describe(), e);
+    }
+  }
+
+  public void setBoolean(final Object entityInstance, final boolean fieldValue) {
+    try {
+      field.setBoolean(entityInstance, fieldValue);
+    } catch (IllegalAccessException e) {
+      throw Die.unexpected("class.fieldName", describe(), e);
+    }
+  }
+
+  public byte getByte(final Object entityInstance) {
+    try {
+      return field.getByte(entityInstance);
+    } catch (IllegalAccessException e) {
+      throw Die.unexpected("class.fieldName", describe(), e);
+    }
+  }
+
+  public void setByte(final Object entityInstance, final byte fieldValue) {
+    try {
+      field.setByte(entityInstance, fieldValue);
+    } catch (IllegalAccessException e) {
+      throw Die.unexpected("class.fieldName", describe(), e);
+    }
+  }
+
+  public char getChar(final Object entityInstance) {
+    try {
+      return field.getChar(entityInstance);
+    } catch (IllegalAccessException e) {
+      throw Die.unexpected("class.fieldName", describe(), e);
+    }
+  }
+
+  public void setChar(final Object entityInstance, final char fieldValue) {
+    try {
+      field.setChar(entityInstance, fieldValue);
+    } catch (IllegalAccessException e) {
+      throw Die.unexpected("class.fieldName", describe(), e);
+    }
+  }
+
+  public short getShort(final Object entityInstance) {
+    try {
+      return field.getShort(entityInstance);
+    } catch (IllegalAccessException e) {
+      throw Die.unexpected("class.fieldName", describe(), e);
+    }
+  }
+
+  public void setShort(final Object entityInstance, final short fieldValue) {
+    try {
+      field.setShort(entityInstance, fieldValue);
+    } catch (IllegalAccessException e) {
+      throw Die.unexpected("class.fieldName", describe(), e);
+    }
+  }
+
+  public int getInt(final Object entityInstance) {
+    try {
+      return field.getInt(entityInstance);
+    } catch (IllegalAccessException e) {
+      throw Die.unexpected("class.fieldName", describe(), e);
+    }
+  }
+
+  public void setInt(final Object entityInstance, final int fieldValue) {
+    try {
+      field.setInt(entityInstance, fieldValue);
+    } catch (IllegalAccessException e) {
+      throw Die.unexpected("class.fieldName", describe(), e);
+    }
+  }
+
+  public long getLong(final Object entityInstance) {
+    try {
+      return field.getLong(entityInstance);
+    } catch (IllegalAccessException e) {
+      throw Die.unexpected("class.fieldName", describe(), e);
+    }
+  }
+
+  public void setLong(final Object entityInstance, final long fieldValue) {
+    try {
+      field.setLong(entityInstance, fieldValue);
+    } catch (IllegalAccessException e) {
+      throw Die.unexpected("class.fieldName", describe(), e);
+    }
+  }
+
+  public float getFloat(final Object entityInstance) {
+    try {
+      return field.getFloat(entityInstance);
+    } catch (IllegalAccessException e) {
+      throw Die.unexpected("class.fieldName", describe(), e);
+    }
+  }
+
+  public void setFloat(final Object entityInstance, final float fieldValue) {
+    try {
+      field.setFloat(entityInstance, fieldValue);
+    } catch (IllegalAccessException e) {
+      throw Die.unexpected("class.fieldName", describe(), e);
+    }
+  }
+
+  public double getDouble(final Object entityInstance) {
+    try {
+      return field.getDouble(entityInstance);
+    } catch (IllegalAccessException e) {
+      throw Die.unexpected("class.fieldName", describe(), e);
+    }
+  }
+
+  public void setDouble(final Object entityInstance, final double fieldValue) {
+    try {
+      field.setDouble(entityInstance, fieldValue);
+    } catch (IllegalAccessException e) {
+      throw Die.unexpected("class.fieldName", describe(), e);
+    }
+  }
+
+  protected String describe() {
+    return field.getDeclaringClass().getSimpleName() + "." + field.getName();
+  }
+
+  public String toString() {
+    return describe();
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.introspect;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Copies the values of all same-named fields from instances of one class to instances of another.
+ * <p/>
+ * The field pairs are matched once, when the copier is created: a field is copied if the target declares
+ * (or inherits) a non-static non-final field of the same name with a type assignable from the source type,
+ * primitives are copied only between fields of the same primitive type, without boxing.
+ *
+ * @see Introspect#getCopier(Class, Class)
+ */
+public class FieldCopier {
+  static final int REFERENCE = 0;
+  static final int BOOLEAN = 1;
+  static final int BYTE = 2;
+  static final int CHAR = 3;
+  static final int SHORT = 4;
+  static final int INT = 5;
+  static final int LONG = 6;
+  static final int FLOAT = 7;
+  static final int DOUBLE = 8;
+
+  protected final Class<?> sourceClass;
+  protected final Class<?> targetClass;
+  protected final FieldAccessor[] sources;
+  protected final FieldAccessor[] targets;
+  protected final int[] kinds;
+
+  public FieldCopier(final Class<?> sourceClass, final Class<?> targetClass) {
+    this.sourceClass = sourceClass;
+    this.targetClass = targetClass;
+
+    final List<FieldAccessor> sourceList = new ArrayList<FieldAccessor>();
+    final List<FieldAccessor> targetList = new ArrayList<FieldAccessor>();
+    final Set<String> seen = new HashSet<String>();
+    for (Class<?> clazz = sourceClass; clazz != null; clazz = clazz.getSuperclass()) {
+      for (Field sourceField : clazz.getDeclaredFields()) {
+        //  fields of subclasses shadow the ones of superclasses
+        if (!copied(sourceField) || !seen.add(sourceField.getName())) {
+          continue;
+        }
+
+        final Field targetField = findField(targetClass, sourceField.getName());
+        if (targetField == null || !copied(targetField) || Modifier.isFinal(targetField.getModifiers())) {
+          continue;
+        }
+
+        final Class<?> sourceType = sourceField.getType();
+        final Class<?> targetType = targetField.getType();
+        if (sourceType.isPrimitive() || targetType.isPrimitive() ?
+            sourceType != targetType : !targetType.isAssignableFrom(sourceType)) {
+          continue;
+        }
+
+        sourceList.add(new FieldAccessor(sourceField));
+        targetList.add(new FieldAccessor(targetField));
+      }
+    }
+
+    sources = sourceList.toArray(new FieldAccessor[sourceList.size()]);
+    targets = targetList.toArray(new FieldAccessor[targetList.size()]);
+    kinds = new int[sources.length];
+    for (int i = 0; i < kinds.length; i++) {
+      kinds[i] = kind(sources[i].getType());
+    }
+  }
+
+  public Class<?> getSourceClass() {
+    return sourceClass;
+  }
+
+  public Class<?> getTargetClass() {
+    return targetClass;
+  }
+
+  /**
+   * @return count of the fields copied by each {@link #copy(Object, Object)}
+   */
+  public int getFieldCount() {
+    return sources.length;
+  }
+
+  public void copy(final Object source, final Object target) {
+    for (int i = 0; i < kinds.length; i++) {
+      final FieldAccessor from = sources[i];
+      final FieldAccessor to = targets[i];
+
+      switch (kinds[i]) {
+        case BOOLEAN:
+          to.setBoolean(target, from.getBoolean(source));
+          break;
+        case BYTE:
+          to.setByte(target, from.getByte(source));
+          break;
+        case CHAR:
+          to.setChar(target, from.getChar(source));
+          break;
+        case SHORT:
+          to.setShort(target, from.getShort(source));
+          break;
+        case INT:
+          to.setInt(target, from.getInt(source));
+          break;
+        case LONG:
+          to.setLong(target, from.getLong(source));
+          break;
+        case FLOAT:
+          to.setFloat(target, from.getFloat(source));
+          break;
+        case DOUBLE:
+          to.setDouble(target, from.getDouble(source));
+          break;
+        default:
+          to.set(target, from.get(source));
+      }
+    }
+  }
+
+  static boolean copied(final Field field) {
+    return !Modifier.isStatic(field.getModifiers()) && !field.isSynthetic();
+  }
+
+  static Field findField(final Class<?> clazz, final String fieldName) {
+    for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+      try {
+        return current.getDeclaredField(fieldName);
+      } catch (NoSuchFieldException e) {
+        //  proceed to the superclass
+      }
+    }
+
+    return null;
+  }
+
+  static int kind(final Class<?> type) {
+    if (type == Boolean.TYPE) {
+      return BOOLEAN;
+    } else if (type == Byte.TYPE) {
+      return BYTE;
+    } else if (type == Character.TYPE) {
+      return CHAR;
+    } else if (type == Short.TYPE) {
+      return SHORT;
+    } else if (type == Integer.TYPE) {
+      return INT;
+    } else if (type == Long.TYPE) {
+      return LONG;
+    } else if (type == Float.TYPE) {
+      return FLOAT;
+    } else if (type == Double.TYPE) {
+      return DOUBLE;
+    }
+
+    return REFERENCE;
+  }
+
+  public String toString() {
+    return "FieldCopier[" + sourceClass.getSimpleName() + " -> " + targetClass.getSimpleName() + ": " + sources.length + " fields]";
+  }
+}
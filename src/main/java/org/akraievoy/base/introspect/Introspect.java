@@ -18,13 +18,17 @@
 
 package org.akraievoy.base.introspect;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.MapMaker;
 import org.akraievoy.base.Die;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Field;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Reflection boosters.
@@ -34,32 +38,56 @@ import java.util.List;
 public class Introspect {
   private static final Logger log = LoggerFactory.getLogger(Introspect.class);
 
+  //  soft values, as accessors reference the class and would otherwise pin the weak keys
+  private static final ConcurrentMap<Class<?>, ConcurrentMap<String, FieldAccessor>> accessors =
+      new MapMaker().weakKeys().softValues().makeMap();
+  private static final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, FieldCopier>> copiers =
+      new MapMaker().weakKeys().softValues().makeMap();
+  private static final ConcurrentMap<Class<?>, ImmutableList<Class<?>>> deepInterfaces =
+      new MapMaker().weakKeys().softValues().makeMap();
+
   /**
-   * Returns all interfaces that are implemented by specified class.
+   * Returns all interfaces that are implemented by specified class, including the super-interfaces,
+   * the class itself goes first if it's an interface.
    *
    * @param clazz to inspect
-   * @return array of all implemented interfaces
+   * @return array of all implemented interfaces, a fresh copy of the cached one
    */
   public static Class[] getDeepInterfaces(final Class clazz) {
-    final List<Class> allInterfaces = new ArrayList<Class>();
+    return getDeepInterfaceList(clazz).toArray(new Class<?>[0]);
+  }
+
+  /**
+   * Same as {@link #getDeepInterfaces(Class)}, but returns the cached list itself, without copying.
+   *
+   * @param clazz to inspect
+   * @return shared immutable list of all implemented interfaces
+   */
+  public static ImmutableList<Class<?>> getDeepInterfaceList(final Class<?> clazz) {
+    final ImmutableList<Class<?>> cached = deepInterfaces.get(clazz);
+    if (cached != null) {
+      return cached;
+    }
+
+    final Set<Class<?>> allInterfaces = new LinkedHashSet<Class<?>>();
     if (clazz.isInterface()) {
       allInterfaces.add(clazz);
     }
+    for (Class<?> currentClazz = clazz; currentClazz != null; currentClazz = currentClazz.getSuperclass()) {
+      addInterfaces(allInterfaces, currentClazz);
+    }
 
-    Class currentClazz = clazz;
+    final ImmutableList<Class<?>> resolved = ImmutableList.copyOf(allInterfaces);
+    deepInterfaces.put(clazz, resolved);
+    return resolved;
+  }
 
-    while (currentClazz.getSuperclass() != null) {
-      final Class[] interfaces = currentClazz.getInterfaces();
-      for (Class anInterface : interfaces) {
-        if (!allInterfaces.contains(anInterface)) {
-          allInterfaces.add(anInterface);
-        }
+  protected static void addInterfaces(final Set<Class<?>> allInterfaces, final Class<?> clazz) {
+    for (Class<?> anInterface : clazz.getInterfaces()) {
+      if (allInterfaces.add(anInterface)) {
+        addInterfaces(allInterfaces, anInterface);
       }
-
-      currentClazz = currentClazz.getSuperclass();
     }
-
-    return allInterfaces.toArray(new Class[allInterfaces.size()]);
   }
 
   public static boolean declaresField(final Class clazz, final String fieldName) {
@@ -86,41 +114,89 @@ public class Introspect {
     throw Die.unexpected("class.fieldName", entityClass.getSimpleName() + "." + fieldName, "field not found in hierarchy");
   }
 
-  public static Object getValue(final Object entityInstance, final String fieldName) {
-    final Class entityClass = entityInstance.getClass();
+  /**
+   * Resolves the field once per class and field name, subsequent calls are a couple of map lookups.
+   *
+   * @param entityClass to resolve the field in, including superclasses
+   * @param fieldName   to resolve
+   * @return cached accessor of the field
+   */
+  public static FieldAccessor getAccessor(final Class<?> entityClass, final String fieldName) {
+    ConcurrentMap<String, FieldAccessor> classAccessors = accessors.get(entityClass);
+    if (classAccessors == null) {
+      final ConcurrentMap<String, FieldAccessor> created = new ConcurrentHashMap<String, FieldAccessor>();
+      classAccessors = accessors.putIfAbsent(entityClass, created);
+      if (classAccessors == null) {
+        classAccessors = created;
+      }
+    }
+
+    final FieldAccessor accessor = classAccessors.get(fieldName);
+    if (accessor != null) {
+      return accessor;
+    }
+
+    final FieldAccessor resolved;
     try {
-      final Field field = resolveField(entityClass, fieldName);
-      field.setAccessible(true);
-      return field.get(entityInstance);
+      resolved = new FieldAccessor(resolveField(entityClass, fieldName));
     } catch (NoSuchFieldException e) {
       throw Die.unexpected("class.fieldName", entityClass.getSimpleName() + "." + fieldName, e);
-    } catch (IllegalAccessException e) {
-      throw Die.unexpected("class.fieldName", entityClass.getSimpleName() + "." + fieldName, e);
     }
+
+    final FieldAccessor raced = classAccessors.putIfAbsent(fieldName, resolved);
+    return raced != null ? raced : resolved;
   }
 
-  public static boolean setValue(final Object entityInstance, final String fieldName, final Object fieldValue,
-                                 final boolean resilient) {
-    final Class entityClass = entityInstance.getClass();
-    final Field field;
+  /**
+   * Matches the fields of the class pair once, subsequent calls are a couple of map lookups.
+   *
+   * @param sourceClass to copy the field values from
+   * @param targetClass to copy the field values to
+   * @return cached copier for the pair of classes
+   */
+  public static FieldCopier getCopier(final Class<?> sourceClass, final Class<?> targetClass) {
+    ConcurrentMap<Class<?>, FieldCopier> sourceCopiers = copiers.get(sourceClass);
+    if (sourceCopiers == null) {
+      final ConcurrentMap<Class<?>, FieldCopier> created = new MapMaker().weakKeys().softValues().makeMap();
+      sourceCopiers = copiers.putIfAbsent(sourceClass, created);
+      if (sourceCopiers == null) {
+        sourceCopiers = created;
+      }
+    }
 
-    try {
-      field = resolveField(entityClass, fieldName);
-    } catch (NoSuchFieldException e) {
-      throw Die.unexpected("class.fieldName", entityClass.getSimpleName() + "." + fieldName, e);
+    final FieldCopier copier = sourceCopiers.get(targetClass);
+    if (copier != null) {
+      return copier;
     }
 
+    final FieldCopier created = new FieldCopier(sourceClass, targetClass);
+    final FieldCopier raced = sourceCopiers.putIfAbsent(targetClass, created);
+    return raced != null ? raced : created;
+  }
+
+  /**
+   * Copies all same-named fields with compatible types, see {@link FieldCopier}.
+   */
+  public static void copyFields(final Object source, final Object target) {
+    getCopier(source.getClass(), target.getClass()).copy(source, target);
+  }
+
+  public static Object getValue(final Object entityInstance, final String fieldName) {
+    return getAccessor(entityInstance.getClass(), fieldName).get(entityInstance);
+  }
+
+  public static boolean setValue(final Object entityInstance, final String fieldName, final Object fieldValue,
+                                 final boolean resilient) {
+    final FieldAccessor accessor = getAccessor(entityInstance.getClass(), fieldName);
+
     try {
-      field.setAccessible(true);
-      field.set(entityInstance, fieldValue);
+      accessor.set(entityInstance, fieldValue);
       return true;
-    } catch (IllegalAccessException e) {
-      throw Die.unexpected("class.fieldName", entityClass.getSimpleName() + "." + fieldName, e);
     } catch (IllegalArgumentException e) {
       final String fieldValueClass = fieldValue != null ? fieldValue.getClass().toString() : "null";
       final String message =
           "Failed to set '" + fieldValue + "'(" + fieldValueClass + ") " +
-              "to field '" + fieldName + "' (" + field.getType() + ")";
+              "to field '" + fieldName + "' (" + accessor.getType() + ")";
       if (resilient) {
         log.error(message, e);
       } else {
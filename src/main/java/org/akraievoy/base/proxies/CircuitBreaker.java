@@ -0,0 +1,185 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import com.google.common.base.Ticker;
+import org.akraievoy.base.Die;
+import org.akraievoy.base.Tickers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Failure rate accounting over a sliding window of the most recent calls.
+ * <p/>
+ * Once the failure rate reaches the threshold the breaker opens and rejects all calls,
+ * after the open period it lets a single probe call through: success of the probe closes the breaker,
+ * failure opens it for another period.
+ * <p/>
+ * All of the state is kept in atomics, so accounting adds no locking to the calls.
+ */
+public class CircuitBreaker {
+  public enum State {CLOSED, OPEN, HALF_OPEN}
+
+  static final int SUCCESS = 0;
+  static final int FAILURE = 1;
+  static final int EMPTY = -1;
+  //  keeps openedAt in the future while not open, so a racing allow() never sees a stale open time
+  static final long NOT_OPEN_NANOS = Long.MAX_VALUE / 2;
+
+  protected final double failureRateThreshold;
+  protected final int minimumCalls;
+  protected final long openNanos;
+  protected final Ticker ticker;
+
+  protected final AtomicIntegerArray window;
+  protected final AtomicLong windowIndex = new AtomicLong();
+  protected final AtomicInteger windowCalls = new AtomicInteger();
+  protected final AtomicInteger windowFailures = new AtomicInteger();
+
+  protected final AtomicInteger state = new AtomicInteger(State.CLOSED.ordinal());
+  protected volatile long openedAt;
+  protected final AtomicLong rejected = new AtomicLong();
+
+  public CircuitBreaker(int windowSize, double failureRateThreshold, long openMillis) {
+    this(windowSize, failureRateThreshold, windowSize / 2, openMillis, Tickers.nano());
+  }
+
+  public CircuitBreaker(
+      int windowSize, double failureRateThreshold, int minimumCalls, long openMillis, Ticker ticker
+  ) {
+    if (windowSize <= 0) {
+      throw Die.unexpected("windowSize", windowSize);
+    }
+    if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+      throw Die.unexpected("failureRateThreshold", failureRateThreshold, "should be in (0, 1]");
+    }
+
+    this.failureRateThreshold = failureRateThreshold;
+    this.minimumCalls = Math.max(1, Math.min(minimumCalls, windowSize));
+    this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    this.ticker = ticker;
+    this.openedAt = ticker.read() + NOT_OPEN_NANOS;
+
+    window = new AtomicIntegerArray(windowSize);
+    for (int i = 0; i < windowSize; i++) {
+      window.set(i, EMPTY);
+    }
+  }
+
+  public State getState() {
+    return State.values()[state.get()];
+  }
+
+  /**
+   * @return count of calls rejected while the breaker was open
+   */
+  public long getRejected() {
+    return rejected.get();
+  }
+
+  /**
+   * @return failure rate over the current window, zero if the window is empty
+   */
+  public double getFailureRate() {
+    final int calls = windowCalls.get();
+    return calls == 0 ? 0 : (double) windowFailures.get() / calls;
+  }
+
+  /**
+   * @return true if the call should proceed, false if it should short-circuit
+   */
+  public boolean allow() {
+    final int current = state.get();
+    if (current == State.CLOSED.ordinal()) {
+      return true;
+    }
+
+    if (current == State.OPEN.ordinal() && ticker.read() - openedAt >= openNanos &&
+        state.compareAndSet(current, State.HALF_OPEN.ordinal())) {
+      openedAt = ticker.read() + NOT_OPEN_NANOS;
+      return true;
+    }
+
+    rejected.incrementAndGet();
+    return false;
+  }
+
+  public void onSuccess() {
+    if (state.get() == State.HALF_OPEN.ordinal()) {
+      reset();
+      state.compareAndSet(State.HALF_OPEN.ordinal(), State.CLOSED.ordinal());
+      return;
+    }
+
+    record(SUCCESS);
+  }
+
+  /**
+   * @return true if this failure has opened the breaker
+   */
+  public boolean onFailure() {
+    if (state.get() == State.HALF_OPEN.ordinal()) {
+      return open(State.HALF_OPEN);
+    }
+
+    record(FAILURE);
+
+    final int calls = windowCalls.get();
+    return calls >= minimumCalls &&
+        windowFailures.get() >= failureRateThreshold * calls &&
+        open(State.CLOSED);
+  }
+
+  protected boolean open(final State from) {
+    if (!state.compareAndSet(from.ordinal(), State.OPEN.ordinal())) {
+      return false;
+    }
+
+    openedAt = ticker.read();
+    reset();
+    return true;
+  }
+
+  protected void record(final int outcome) {
+    final int slot = (int) (windowIndex.getAndIncrement() % window.length());
+    final int previous = window.getAndSet(slot, outcome);
+
+    if (previous == EMPTY) {
+      windowCalls.incrementAndGet();
+    }
+    if (previous != outcome) {
+      windowFailures.addAndGet(outcome == FAILURE ? 1 : previous == FAILURE ? -1 : 0);
+    }
+  }
+
+  protected void reset() {
+    for (int i = 0; i < window.length(); i++) {
+      final int previous = window.getAndSet(i, EMPTY);
+      if (previous != EMPTY) {
+        windowCalls.decrementAndGet();
+      }
+      if (previous == FAILURE) {
+        windowFailures.decrementAndGet();
+      }
+    }
+  }
+}
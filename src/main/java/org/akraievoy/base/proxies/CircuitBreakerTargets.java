@@ -0,0 +1,85 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import com.google.common.base.Ticker;
+import org.slf4j.Logger;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single robust target behind a circuit breaker: no target at all while the breaker is open,
+ * failures are logged at most once per log interval, with the count of the ones suppressed.
+ */
+class CircuitBreakerTargets implements GuardedTargets {
+  static final Object[] NONE = new Object[0];
+
+  final Object[] targets;
+  final CircuitBreaker breaker;
+  final Logger failureLogger;
+  final long logIntervalNanos;
+  final Ticker ticker;
+
+  final AtomicLong lastLogged;
+  final AtomicLong suppressed = new AtomicLong();
+
+  CircuitBreakerTargets(
+      final Object impl, final CircuitBreaker breaker, final Logger failureLogger, final long logIntervalMillis
+  ) {
+    this.targets = new Object[]{impl};
+    this.breaker = breaker;
+    this.failureLogger = failureLogger;
+    this.logIntervalNanos = TimeUnit.MILLISECONDS.toNanos(logIntervalMillis);
+    this.ticker = breaker.ticker;
+    this.lastLogged = new AtomicLong(ticker.read() - logIntervalNanos);
+  }
+
+  public Object[] getTargets() {
+    return breaker.allow() ? targets : NONE;
+  }
+
+  public void onSuccess() {
+    breaker.onSuccess();
+  }
+
+  public void onFailure(Method method, Throwable failure) {
+    final boolean opened = breaker.onFailure();
+
+    final long now = ticker.read();
+    final long logged = lastLogged.get();
+    if (!opened && (now - logged < logIntervalNanos || !lastLogged.compareAndSet(logged, now))) {
+      suppressed.incrementAndGet();
+      return;
+    }
+
+    final long suppressedCount = suppressed.getAndSet(0);
+    if (failureLogger.isWarnEnabled()) {
+      failureLogger.warn(
+          method.getName() + " failed: " + failure.getMessage() +
+              (suppressedCount > 0 ? " (" + suppressedCount + " similar failures suppressed)" : "") +
+              (opened ? ", circuit opened" : "")
+      );
+    }
+    if (failureLogger.isDebugEnabled()) {
+      failureLogger.debug("details: " + failure.getMessage(), failure);
+    }
+  }
+}
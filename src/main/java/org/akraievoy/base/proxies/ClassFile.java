@@ -0,0 +1,368 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bare minimum of a class file writer: constant pool, fields and methods without stack map frames.
+ * <p/>
+ * Classes are emitted as version 49 (java 5), so the verifier infers the frames on its own.
+ */
+final class ClassFile {
+  static final int VERSION = 49;
+
+  static final int ACC_PUBLIC = 0x0001;
+  static final int ACC_PRIVATE = 0x0002;
+  static final int ACC_FINAL = 0x0010;
+  static final int ACC_SUPER = 0x0020;
+
+  static final int OP_ACONST_NULL = 0x01;
+  static final int OP_ICONST_0 = 0x03;
+  static final int OP_LCONST_0 = 0x09;
+  static final int OP_FCONST_0 = 0x0b;
+  static final int OP_DCONST_0 = 0x0e;
+  static final int OP_BIPUSH = 0x10;
+  static final int OP_SIPUSH = 0x11;
+  static final int OP_ILOAD = 0x15;
+  static final int OP_LLOAD = 0x16;
+  static final int OP_FLOAD = 0x17;
+  static final int OP_DLOAD = 0x18;
+  static final int OP_ALOAD = 0x19;
+  static final int OP_AALOAD = 0x32;
+  static final int OP_ISTORE = 0x36;
+  static final int OP_LSTORE = 0x37;
+  static final int OP_FSTORE = 0x38;
+  static final int OP_DSTORE = 0x39;
+  static final int OP_ASTORE = 0x3a;
+  static final int OP_DUP = 0x59;
+  static final int OP_IINC = 0x84;
+  static final int OP_IF_ICMPGE = 0xa2;
+  static final int OP_GOTO = 0xa7;
+  static final int OP_IRETURN = 0xac;
+  static final int OP_LRETURN = 0xad;
+  static final int OP_FRETURN = 0xae;
+  static final int OP_DRETURN = 0xaf;
+  static final int OP_ARETURN = 0xb0;
+  static final int OP_RETURN = 0xb1;
+  static final int OP_GETFIELD = 0xb4;
+  static final int OP_PUTFIELD = 0xb5;
+  static final int OP_INVOKEVIRTUAL = 0xb6;
+  static final int OP_INVOKESPECIAL = 0xb7;
+  static final int OP_INVOKEINTERFACE = 0xb9;
+  static final int OP_ARRAYLENGTH = 0xbe;
+  static final int OP_ATHROW = 0xbf;
+  static final int OP_CHECKCAST = 0xc0;
+  static final int OP_MONITORENTER = 0xc2;
+  static final int OP_MONITOREXIT = 0xc3;
+  static final int OP_IFNONNULL = 0xc7;
+
+  static final int TAG_UTF8 = 1;
+  static final int TAG_CLASS = 7;
+  static final int TAG_FIELDREF = 9;
+  static final int TAG_METHODREF = 10;
+  static final int TAG_INTERFACE_METHODREF = 11;
+  static final int TAG_NAME_AND_TYPE = 12;
+
+  final Map<String, Integer> poolIndex = new HashMap<String, Integer>();
+  final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+  final DataOutputStream pool = new DataOutputStream(poolBytes);
+  int poolCount = 1;
+
+  final ByteArrayOutputStream fieldBytes = new ByteArrayOutputStream();
+  final DataOutputStream fields = new DataOutputStream(fieldBytes);
+  int fieldCount;
+
+  final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+  final DataOutputStream methods = new DataOutputStream(methodBytes);
+  int methodCount;
+
+  int utf8(final String value) throws IOException {
+    final String key = "U" + value;
+    final Integer known = poolIndex.get(key);
+    if (known != null) {
+      return known;
+    }
+
+    pool.writeByte(TAG_UTF8);
+    pool.writeUTF(value);
+    return register(key);
+  }
+
+  int classRef(final String internalName) throws IOException {
+    return ref(TAG_CLASS, utf8(internalName));
+  }
+
+  int fieldRef(final String owner, final String name, final String descriptor) throws IOException {
+    return ref(TAG_FIELDREF, classRef(owner), nameAndType(name, descriptor));
+  }
+
+  int methodRef(final String owner, final String name, final String descriptor) throws IOException {
+    return ref(TAG_METHODREF, classRef(owner), nameAndType(name, descriptor));
+  }
+
+  int interfaceMethodRef(final String owner, final String name, final String descriptor) throws IOException {
+    return ref(TAG_INTERFACE_METHODREF, classRef(owner), nameAndType(name, descriptor));
+  }
+
+  int nameAndType(final String name, final String descriptor) throws IOException {
+    return ref(TAG_NAME_AND_TYPE, utf8(name), utf8(descriptor));
+  }
+
+  int ref(final int tag, final int index) throws IOException {
+    final String key = tag + ":" + index;
+    final Integer known = poolIndex.get(key);
+    if (known != null) {
+      return known;
+    }
+
+    pool.writeByte(tag);
+    pool.writeShort(index);
+    return register(key);
+  }
+
+  int ref(final int tag, final int indexA, final int indexB) throws IOException {
+    final String key = tag + ":" + indexA + ":" + indexB;
+    final Integer known = poolIndex.get(key);
+    if (known != null) {
+      return known;
+    }
+
+    pool.writeByte(tag);
+    pool.writeShort(indexA);
+    pool.writeShort(indexB);
+    return register(key);
+  }
+
+  int register(final String key) {
+    final int index = poolCount++;
+    poolIndex.put(key, index);
+    return index;
+  }
+
+  void field(final int access, final String name, final String descriptor) throws IOException {
+    fields.writeShort(access);
+    fields.writeShort(utf8(name));
+    fields.writeShort(utf8(descriptor));
+    fields.writeShort(0);
+    fieldCount++;
+  }
+
+  void method(final int access, final String name, final String descriptor, final Code code) throws IOException {
+    final byte[] bytecode = code.toByteArray();
+    final int codeAttrName = utf8("Code");
+
+    methods.writeShort(access);
+    methods.writeShort(utf8(name));
+    methods.writeShort(utf8(descriptor));
+    methods.writeShort(1);
+
+    methods.writeShort(codeAttrName);
+    methods.writeInt(12 + bytecode.length + 8 * code.handlerCount);
+    methods.writeShort(code.maxStack);
+    methods.writeShort(code.maxLocals);
+    methods.writeInt(bytecode.length);
+    methods.write(bytecode);
+    methods.writeShort(code.handlerCount);
+    methods.write(code.handlerBytes.toByteArray());
+    methods.writeShort(0);
+
+    methodCount++;
+  }
+
+  byte[] toByteArray(final String name, final String superName, final String interfaceName) throws IOException {
+    final int thisIndex = classRef(name);
+    final int superIndex = classRef(superName);
+    final int interfaceIndex = classRef(interfaceName);
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(bytes);
+
+    out.writeInt(0xCAFEBABE);
+    out.writeShort(0);
+    out.writeShort(VERSION);
+    out.writeShort(poolCount);
+    out.write(poolBytes.toByteArray());
+    out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+    out.writeShort(thisIndex);
+    out.writeShort(superIndex);
+    out.writeShort(1);
+    out.writeShort(interfaceIndex);
+    out.writeShort(fieldCount);
+    out.write(fieldBytes.toByteArray());
+    out.writeShort(methodCount);
+    out.write(methodBytes.toByteArray());
+    out.writeShort(0);
+
+    return bytes.toByteArray();
+  }
+
+  static String internalName(final Class<?> clazz) {
+    return clazz.getName().replace('.', '/');
+  }
+
+  static String descriptor(final Class<?> type) {
+    if (type == Void.TYPE) {
+      return "V";
+    } else if (type == Boolean.TYPE) {
+      return "Z";
+    } else if (type == Byte.TYPE) {
+      return "B";
+    } else if (type == Character.TYPE) {
+      return "C";
+    } else if (type == Short.TYPE) {
+      return "S";
+    } else if (type == Integer.TYPE) {
+      return "I";
+    } else if (type == Long.TYPE) {
+      return "J";
+    } else if (type == Float.TYPE) {
+      return "F";
+    } else if (type == Double.TYPE) {
+      return "D";
+    } else if (type.isArray()) {
+      return internalName(type);
+    }
+
+    return "L" + internalName(type) + ";";
+  }
+
+  static String descriptor(final Class<?>[] params, final Class<?> returnType) {
+    final StringBuilder result = new StringBuilder("(");
+    for (Class<?> param : params) {
+      result.append(descriptor(param));
+    }
+    return result.append(")").append(descriptor(returnType)).toString();
+  }
+
+  static int slots(final Class<?> type) {
+    return type == Long.TYPE || type == Double.TYPE ? 2 : type == Void.TYPE ? 0 : 1;
+  }
+
+  /**
+   * Opcode for the int-like flavour, the others are at fixed offsets in the opcode table.
+   */
+  static int typed(final int intOpcode, final Class<?> type) {
+    if (type == Long.TYPE) {
+      return intOpcode + 1;
+    } else if (type == Float.TYPE) {
+      return intOpcode + 2;
+    } else if (type == Double.TYPE) {
+      return intOpcode + 3;
+    } else if (type.isPrimitive()) {
+      return intOpcode;
+    }
+
+    return intOpcode + 4;
+  }
+
+  /**
+   * Bytecode of a single method, with forward jumps patched once the target is known.
+   */
+  static final class Code {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final ByteArrayOutputStream handlerBytes = new ByteArrayOutputStream();
+    final DataOutputStream handlers = new DataOutputStream(handlerBytes);
+    int handlerCount;
+    final Map<Integer, Integer> patches = new HashMap<Integer, Integer>();
+    int maxStack;
+    int maxLocals;
+
+    Code(final int maxStack, final int maxLocals) {
+      this.maxStack = maxStack;
+      this.maxLocals = maxLocals;
+    }
+
+    int pc() {
+      return bytes.size();
+    }
+
+    Code op(final int opcode) {
+      bytes.write(opcode);
+      return this;
+    }
+
+    Code op(final int opcode, final int u1) {
+      bytes.write(opcode);
+      bytes.write(u1);
+      return this;
+    }
+
+    Code op2(final int opcode, final int u2) {
+      bytes.write(opcode);
+      bytes.write(u2 >> 8);
+      bytes.write(u2);
+      return this;
+    }
+
+    Code iinc(final int local, final int delta) {
+      bytes.write(OP_IINC);
+      bytes.write(local);
+      bytes.write(delta);
+      return this;
+    }
+
+    Code invokeInterface(final int methodRef, final int argSlots) {
+      op2(OP_INVOKEINTERFACE, methodRef);
+      bytes.write(argSlots + 1);
+      bytes.write(0);
+      return this;
+    }
+
+    /**
+     * @return position of the jump, to be passed to {@link #patch(int, int)}
+     */
+    int jump(final int opcode) {
+      final int at = pc();
+      op2(opcode, 0);
+      return at;
+    }
+
+    Code jumpTo(final int opcode, final int target) {
+      final int at = pc();
+      return op2(opcode, target - at);
+    }
+
+    void patch(final int jumpAt, final int target) {
+      //  applied on toByteArray(), as jump positions never move
+      patches.put(jumpAt, target - jumpAt);
+    }
+
+    void handler(final int start, final int end, final int handler, final int catchType) throws IOException {
+      handlers.writeShort(start);
+      handlers.writeShort(end);
+      handlers.writeShort(handler);
+      handlers.writeShort(catchType);
+      handlerCount++;
+    }
+
+    byte[] toByteArray() {
+      final byte[] result = bytes.toByteArray();
+      for (Map.Entry<Integer, Integer> patch : patches.entrySet()) {
+        result[patch.getKey() + 1] = (byte) (patch.getValue() >> 8);
+        result[patch.getKey() + 2] = (byte) (int) patch.getValue();
+      }
+      return result;
+    }
+  }
+}
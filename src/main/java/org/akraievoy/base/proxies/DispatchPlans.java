@@ -0,0 +1,115 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import com.google.common.base.Defaults;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+
+import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Copy-on-write cache of per-method dispatch plans for the reflective proxies:
+ * steady-state calls do a single identity lookup, without any type checks or allocations.
+ * <p/>
+ * Proxy classes pass the same <code>Method</code> instances on each call, so identity is enough.
+ */
+final class DispatchPlans {
+  final Object[] impls;
+  final Predicate<Method> readers;
+  volatile Map<Method, Plan> plans = new IdentityHashMap<Method, Plan>();
+
+  DispatchPlans(final Object[] impls) {
+    this(impls, Predicates.<Method>alwaysFalse());
+  }
+
+  DispatchPlans(final Object[] impls, final Predicate<Method> readers) {
+    this.impls = impls;
+    this.readers = readers;
+  }
+
+  Plan get(final Method method) {
+    final Plan plan = plans.get(method);
+    if (plan != null) {
+      return plan;
+    }
+
+    synchronized (this) {
+      final Map<Method, Plan> current = plans;
+      final Plan planned = current.get(method);
+      if (planned != null) {
+        return planned;
+      }
+
+      final Plan created = new Plan(method, impls, readers.apply(method));
+      final Map<Method, Plan> updated = new IdentityHashMap<Method, Plan>(current);
+      updated.put(method, created);
+      plans = updated;
+
+      return created;
+    }
+  }
+
+  static final class Plan {
+    final Object defaultValue;
+    final Method method;
+    final Method[] targets;
+    final boolean reader;
+
+    Plan(final Method method, final Object[] impls, final boolean reader) {
+      this.method = accessible(method);
+      this.reader = reader;
+
+      final Class<?> resultType = method.getReturnType();
+      defaultValue = resultType.isPrimitive() ? Defaults.defaultValue(resultType) : null;
+
+      targets = new Method[impls.length];
+      for (int i = 0; i < impls.length; i++) {
+        targets[i] = resolve(method, impls[i]);
+      }
+    }
+
+    /**
+     * @return accessible method of the impl class, or the interface method if the former can't be made accessible
+     */
+    static Method resolve(final Method method, final Object impl) {
+      try {
+        final Method resolved = impl.getClass().getMethod(method.getName(), method.getParameterTypes());
+        resolved.setAccessible(true);
+        return resolved;
+      } catch (NoSuchMethodException e) {
+        return accessible(method);
+      } catch (RuntimeException e) {
+        //  non-public impl class in a module not open to us (InaccessibleObjectException), or a security manager
+        return accessible(method);
+      }
+    }
+
+    static Method accessible(final Method method) {
+      try {
+        method.setAccessible(true);
+      } catch (RuntimeException e) {
+        //  access is checked on each call then, still works for public interfaces
+      }
+      return method;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Reflective counterpart of {@link ProxyGenerator#guarded(Class, GuardedTargets)}.
+ */
+class InvocationHandlerGuarded implements InvocationHandler {
+  final GuardedTargets targets;
+  final DispatchPlans plans = new DispatchPlans(new Object[0]);
+
+  InvocationHandlerGuarded(final GuardedTargets targets) {
+    this.targets = targets;
+  }
+
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    final DispatchPlans.Plan plan = plans.get(method);
+    Object result = plan.defaultValue;
+
+    for (Object target : targets.getTargets()) {
+      final Object returned;
+      try {
+        returned = plan.method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        targets.onFailure(method, e.getCause());
+        continue;
+      } catch (Throwable t) {
+        //  same as the generated proxies: a call which did not succeed is a failure, whatever the reason
+        targets.onFailure(method, t);
+        continue;
+      }
+
+      targets.onSuccess();
+      result = returned;
+    }
+
+    return result;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import com.google.common.base.Ticker;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Times each call and records it into the meter of the method, failures included.
+ */
+class InvocationHandlerMetered<E> implements InvocationHandler {
+  final Class<E> interf;
+  final E impl;
+  final MeterRegistry registry;
+  final Ticker ticker;
+  final DispatchPlans plans;
+
+  volatile Map<Method, Meter> meters = new IdentityHashMap<Method, Meter>();
+
+  InvocationHandlerMetered(final Class<E> interf, final E impl, final MeterRegistry registry, final Ticker ticker) {
+    this.interf = interf;
+    this.impl = impl;
+    this.registry = registry;
+    this.ticker = ticker;
+    this.plans = new DispatchPlans(new Object[]{impl});
+  }
+
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    final Method target = plans.get(method).targets[0];
+    final Meter meter = meter(method);
+
+    final long start = ticker.read();
+    boolean failed = true;
+    try {
+      final Object result = target.invoke(impl, args);
+      failed = false;
+      return result;
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    } finally {
+      meter.record(ticker.read() - start, failed);
+    }
+  }
+
+  Meter meter(final Method method) {
+    final Meter meter = meters.get(method);
+    if (meter != null) {
+      return meter;
+    }
+
+    synchronized (this) {
+      final Meter known = meters.get(method);
+      if (known != null) {
+        return known;
+      }
+
+      final Meter created = registry.getMeter(interf, method);
+      final Map<Method, Meter> updated = new IdentityHashMap<Method, Meter>(meters);
+      updated.put(method, created);
+      meters = updated;
+
+      return created;
+    }
+  }
+}
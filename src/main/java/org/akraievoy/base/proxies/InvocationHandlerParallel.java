@@ -0,0 +1,169 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import com.google.common.base.Objects;
+import com.google.common.util.concurrent.UncheckedTimeoutException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatches each call to all impls on the executor and aggregates the results as they complete,
+ * so the latency of the call is bound by the slowest impl needed, not the sum of all of them.
+ */
+class InvocationHandlerParallel<E> implements InvocationHandler {
+  final E[] impls;
+  final Executor executor;
+  final Proxies.Aggregation aggregation;
+  final long timeoutNanos;
+  final DispatchPlans plans;
+
+  @SuppressWarnings({"unchecked"})
+  InvocationHandlerParallel(
+      final Executor executor, final Proxies.Aggregation aggregation, final long timeoutMillis, final E... impls
+  ) {
+    this.impls = impls;
+    this.executor = executor;
+    this.aggregation = aggregation;
+    //  zero stands for no timeout
+    this.timeoutNanos = timeoutMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0;
+    this.plans = new DispatchPlans(impls);
+  }
+
+  public Object invoke(Object proxy, final Method method, final Object[] args) throws Throwable {
+    final DispatchPlans.Plan plan = plans.get(method);
+    if (impls.length == 0) {
+      return plan.defaultValue;
+    }
+
+    final CompletionService<Object> completion = new ExecutorCompletionService<Object>(executor);
+    final Future<?>[] futures = new Future<?>[impls.length];
+    try {
+      for (int i = 0; i < impls.length; i++) {
+        final Method target = plan.targets[i];
+        final E impl = impls[i];
+        futures[i] = completion.submit(new Callable<Object>() {
+          public Object call() throws Exception {
+            return target.invoke(impl, args);
+          }
+        });
+      }
+
+      return aggregate(method, plan, completion, futures);
+    } finally {
+      for (Future<?> future : futures) {
+        if (future != null) {
+          future.cancel(true);
+        }
+      }
+    }
+  }
+
+  protected Object aggregate(
+      final Method method, final DispatchPlans.Plan plan,
+      final CompletionService<Object> completion, final Future<?>[] futures
+  ) throws Throwable {
+    final long deadline = System.nanoTime() + timeoutNanos;
+    final int quorum = futures.length / 2 + 1;
+
+    final Object[] votedValues = new Object[futures.length];
+    final int[] votes = new int[futures.length];
+    int voted = 0;
+
+    Throwable lastFailure = null;
+    int failures = 0;
+
+    for (int completed = 0; completed < futures.length; completed++) {
+      final Future<Object> future = timeoutNanos > 0 ?
+          completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS) :
+          completion.take();
+      if (future == null) {
+        throw new UncheckedTimeoutException(
+            "'" + method.toGenericString() + "' timed out after " + completed + " of " + futures.length + " impls"
+        );
+      }
+
+      final Object result;
+      try {
+        result = future.get();
+      } catch (ExecutionException e) {
+        lastFailure = unwrap(e);
+        failures++;
+
+        if (aggregation == Proxies.Aggregation.ALL ||
+            aggregation == Proxies.Aggregation.QUORUM && failures > futures.length - quorum) {
+          throw lastFailure;
+        }
+        continue;
+      }
+
+      if (aggregation == Proxies.Aggregation.FIRST_NOT_NULL && result != null) {
+        return result;
+      }
+
+      if (aggregation == Proxies.Aggregation.QUORUM) {
+        int vote = 0;
+        while (vote < voted && !Objects.equal(votedValues[vote], result)) {
+          vote++;
+        }
+        if (vote == voted) {
+          votedValues[voted++] = result;
+        }
+        if (++votes[vote] >= quorum) {
+          return result == null ? plan.defaultValue : result;
+        }
+      }
+    }
+
+    if (aggregation == Proxies.Aggregation.ALL) {
+      //  same as the sequential join: the result of the last impl
+      final Object last = futures[futures.length - 1].get();
+      return last == null ? plan.defaultValue : last;
+    }
+
+    if (failures == futures.length) {
+      throw lastFailure;
+    }
+
+    if (aggregation == Proxies.Aggregation.QUORUM) {
+      throw new IllegalStateException(
+          "'" + method.toGenericString() + "' has no quorum of " + quorum + " among " + voted + " distinct results"
+      );
+    }
+
+    return plan.defaultValue;
+  }
+
+  static Throwable unwrap(final ExecutionException e) {
+    final Throwable cause = e.getCause();
+    if (cause instanceof InvocationTargetException && cause.getCause() != null) {
+      return cause.getCause();
+    }
+    return cause != null ? cause : e;
+  }
+}
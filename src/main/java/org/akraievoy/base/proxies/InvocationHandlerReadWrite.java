@@ -0,0 +1,58 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import com.google.common.base.Predicate;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * Runs reader methods under the shared read lock and everything else under the exclusive write lock.
+ */
+class InvocationHandlerReadWrite<E> implements InvocationHandler {
+  final E impl;
+  final Lock readLock;
+  final Lock writeLock;
+  final DispatchPlans plans;
+
+  InvocationHandlerReadWrite(final E impl, final ReadWriteLock lock, final Predicate<Method> readers) {
+    this.impl = impl;
+    this.readLock = lock.readLock();
+    this.writeLock = lock.writeLock();
+    this.plans = new DispatchPlans(new Object[]{impl}, readers);
+  }
+
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    final DispatchPlans.Plan plan = plans.get(method);
+    final Lock lock = plan.reader ? readLock : writeLock;
+
+    lock.lock();
+    try {
+      return plan.targets[0].invoke(impl, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
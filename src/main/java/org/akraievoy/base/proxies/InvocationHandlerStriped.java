@@ -0,0 +1,90 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Locks a stripe chosen by the hash of the key argument, so calls for different keys mostly run concurrently.
+ * <p/>
+ * Methods without the key argument lock all of the stripes, always in the same order.
+ */
+class InvocationHandlerStriped<E> implements InvocationHandler {
+  final E impl;
+  final int keyIndex;
+  final ReentrantLock[] stripes;
+  final DispatchPlans plans;
+
+  InvocationHandlerStriped(final E impl, final int stripeCount, final int keyIndex) {
+    this.impl = impl;
+    this.keyIndex = keyIndex;
+    this.plans = new DispatchPlans(new Object[]{impl});
+
+    int size = 1;
+    while (size < stripeCount) {
+      size <<= 1;
+    }
+    stripes = new ReentrantLock[size];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+  }
+
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    final DispatchPlans.Plan plan = plans.get(method);
+
+    if (args != null && args.length > keyIndex) {
+      final ReentrantLock stripe = stripes[stripe(args[keyIndex])];
+      stripe.lock();
+      try {
+        return plan.targets[0].invoke(impl, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      } finally {
+        stripe.unlock();
+      }
+    }
+
+    int locked = 0;
+    try {
+      for (; locked < stripes.length; locked++) {
+        stripes[locked].lock();
+      }
+      return plan.targets[0].invoke(impl, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    } finally {
+      while (locked > 0) {
+        stripes[--locked].unlock();
+      }
+    }
+  }
+
+  int stripe(final Object key) {
+    if (key == null) {
+      return 0;
+    }
+
+    final int hash = key.hashCode();
+    return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+  }
+}
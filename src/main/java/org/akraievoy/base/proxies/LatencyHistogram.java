@@ -0,0 +1,98 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of non-negative longs: each power of two is split into {@link #SUB_BUCKETS} equal buckets,
+ * so values are kept within 12.5% of relative error over the whole range of long.
+ * <p/>
+ * Recording is a couple of atomic increments, no locks and no allocations.
+ */
+public class LatencyHistogram {
+  static final int SUB_BITS = 3;
+  public static final int SUB_BUCKETS = 1 << SUB_BITS;
+  public static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+  protected final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  protected final AtomicLong total = new AtomicLong();
+  protected final AtomicLong max = new AtomicLong();
+
+  public void record(final long value) {
+    final long clamped = Math.max(0, value);
+    counts.incrementAndGet(index(clamped));
+    total.addAndGet(clamped);
+
+    long currentMax;
+    while (clamped > (currentMax = max.get()) && !max.compareAndSet(currentMax, clamped)) {
+      //  spin: lost the race to another, possibly lower, max
+    }
+  }
+
+  public long getTotal() {
+    return total.get();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * @param target to copy the bucket counts into, of {@link #BUCKETS} length
+   * @return the same target
+   */
+  public long[] copyCounts(final long[] target) {
+    for (int i = 0; i < BUCKETS; i++) {
+      target[i] = counts.get(i);
+    }
+    return target;
+  }
+
+  public static int index(final long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+
+    final int exponent = 63 - Long.numberOfLeadingZeros(value);
+    final int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+  }
+
+  /**
+   * @return the smallest value which falls into the bucket
+   */
+  public static long lowerBound(final int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+
+    final int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+    final long sub = index % SUB_BUCKETS;
+    return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+  }
+
+  /**
+   * @return the largest value which falls into the bucket
+   */
+  public static long upperBound(final int index) {
+    return index + 1 < BUCKETS ? lowerBound(index + 1) - 1 : Long.MAX_VALUE;
+  }
+}
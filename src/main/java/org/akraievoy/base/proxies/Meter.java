@@ -0,0 +1,51 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import org.akraievoy.base.stripedCounter.StripedCounter;
+
+/**
+ * Calls, failures and latency of a single interface method.
+ */
+public class Meter {
+  protected final String name;
+  protected final LatencyHistogram latency = new LatencyHistogram();
+  protected final StripedCounter failures = new StripedCounter();
+
+  public Meter(final String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void record(final long nanos, final boolean failed) {
+    latency.record(nanos);
+    if (failed) {
+      failures.increment();
+    }
+  }
+
+  public MeterSnapshot snapshot() {
+    return new MeterSnapshot(
+        name, failures.sum(), latency.getTotal(), latency.getMax(), latency.copyCounts(new long[LatencyHistogram.BUCKETS])
+    );
+  }
+}
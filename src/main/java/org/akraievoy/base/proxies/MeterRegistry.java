@@ -0,0 +1,79 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Meters of all the methods of all the interfaces metered with {@link Proxies#metered(Class, Object, MeterRegistry)}.
+ * <p/>
+ * Proxies of the same interface sharing the registry also share the meters.
+ */
+public class MeterRegistry {
+  protected final ConcurrentMap<String, Meter> meters = new ConcurrentHashMap<String, Meter>();
+
+  public Meter getMeter(final String name) {
+    final Meter meter = meters.get(name);
+    if (meter != null) {
+      return meter;
+    }
+
+    final Meter created = new Meter(name);
+    final Meter raced = meters.putIfAbsent(name, created);
+    return raced != null ? raced : created;
+  }
+
+  /**
+   * Meters are named after fully qualified types, so same-named interfaces from different packages don't mix.
+   */
+  public Meter getMeter(final Class<?> interf, final Method method) {
+    final StringBuilder name = new StringBuilder(typeName(interf)).append('.').append(method.getName());
+    name.append('(');
+    final Class<?>[] params = method.getParameterTypes();
+    for (int i = 0; i < params.length; i++) {
+      name.append(i > 0 ? "," : "").append(typeName(params[i]));
+    }
+    name.append(')');
+
+    return getMeter(name.toString());
+  }
+
+  static String typeName(final Class<?> type) {
+    final String canonicalName = type.getCanonicalName();
+    return canonicalName != null ? canonicalName : type.getName();
+  }
+
+  /**
+   * @return snapshots of all meters, which had any calls so far
+   */
+  public List<MeterSnapshot> snapshot() {
+    final List<MeterSnapshot> snapshots = new ArrayList<MeterSnapshot>(meters.size());
+    for (Meter meter : meters.values()) {
+      final MeterSnapshot snapshot = meter.snapshot();
+      if (snapshot.getCallCount() > 0) {
+        snapshots.add(snapshot);
+      }
+    }
+    return snapshots;
+  }
+}
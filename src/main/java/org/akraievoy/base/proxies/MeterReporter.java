@@ -0,0 +1,85 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import org.akraievoy.base.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Periodically logs the calls metered since the previous report.
+ */
+public class MeterReporter extends Executors.Task {
+  private static final Logger log = LoggerFactory.getLogger(MeterReporter.class);
+
+  protected final MeterRegistry registry;
+  protected final String registryName;
+  protected final long period;
+
+  protected final Map<String, MeterSnapshot> reported = new HashMap<String, MeterSnapshot>();
+
+  /**
+   * @param executor     to schedule reports with
+   * @param registry     to report on
+   * @param registryName to label reports with
+   * @param period       millis between reports
+   */
+  public MeterReporter(
+      final ScheduledExecutorService executor, final MeterRegistry registry, final String registryName, final long period
+  ) {
+    super(executor);
+    this.registry = registry;
+    this.registryName = registryName;
+    this.period = period;
+  }
+
+  protected long getInitialDelay() {
+    return period;
+  }
+
+  protected long getRestartDelay() {
+    return period;
+  }
+
+  protected String getName() {
+    return "meters: " + registryName;
+  }
+
+  protected void runInternal() {
+    if (!getLog().isInfoEnabled()) {
+      return;
+    }
+
+    for (MeterSnapshot current : registry.snapshot()) {
+      final MeterSnapshot previous = reported.put(current.getName(), current);
+      final MeterSnapshot delta = previous == null ? current : current.minus(previous);
+      if (delta.getCallCount() > 0) {
+        getLog().info("[" + registryName + "] " + delta);
+      }
+    }
+  }
+
+  protected Logger getLog() {
+    return log;
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import org.akraievoy.base.Format;
+
+/**
+ * Immutable snapshot of a {@link Meter}, all times are in nanoseconds.
+ */
+public class MeterSnapshot {
+  protected final String name;
+  protected final long failureCount;
+  protected final long totalTime;
+  protected final long maxTime;
+  protected final long[] counts;
+  protected final long callCount;
+
+  MeterSnapshot(
+      final String name, final long failureCount, final long totalTime, final long maxTime, final long[] counts
+  ) {
+    this.name = name;
+    this.failureCount = failureCount;
+    this.totalTime = totalTime;
+    this.maxTime = maxTime;
+    this.counts = counts;
+
+    long callCount = 0;
+    for (long count : counts) {
+      callCount += count;
+    }
+    this.callCount = callCount;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getCallCount() {
+    return callCount;
+  }
+
+  public long getFailureCount() {
+    return failureCount;
+  }
+
+  public long getTotalTime() {
+    return totalTime;
+  }
+
+  /**
+   * @return max since the meter was created, deltas keep the max of the later snapshot
+   */
+  public long getMaxTime() {
+    return maxTime;
+  }
+
+  public double getMeanTime() {
+    return callCount == 0 ? 0.0 : (double) totalTime / callCount;
+  }
+
+  /**
+   * @param quantile in [0, 1]
+   * @return upper bound of the bucket holding the quantile, capped by the max
+   */
+  public long getQuantile(final double quantile) {
+    if (callCount == 0) {
+      return 0;
+    }
+
+    final long rank = Math.max(1, (long) Math.ceil(quantile * callCount));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(LatencyHistogram.upperBound(i), maxTime);
+      }
+    }
+
+    return maxTime;
+  }
+
+  /**
+   * @param earlier snapshot of the same meter taken before this one
+   * @return calls recorded since the earlier snapshot
+   */
+  public MeterSnapshot minus(final MeterSnapshot earlier) {
+    final long[] deltas = new long[counts.length];
+    for (int i = 0; i < deltas.length; i++) {
+      deltas[i] = counts[i] - earlier.counts[i];
+    }
+
+    return new MeterSnapshot(name, failureCount - earlier.failureCount, totalTime - earlier.totalTime, maxTime, deltas);
+  }
+
+  public String toString() {
+    final StringBuilder result = new StringBuilder();
+
+    result.append(name);
+    result.append(": calls: ").append(callCount);
+    result.append(", failed: ").append(failureCount);
+    result.append(", avg: ").append(Format.format2(getMeanTime() / 1e6)).append(" ms");
+    result.append(", p50: ").append(Format.format2(getQuantile(0.5) / 1e6)).append(" ms");
+    result.append(", p99: ").append(Format.format2(getQuantile(0.99) / 1e6)).append(" ms");
+    result.append(", max: ").append(Format.format2(maxTime / 1e6)).append(" ms");
+
+    return result.toString();
+  }
+}
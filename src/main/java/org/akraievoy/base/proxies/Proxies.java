@@ -18,28 +18,51 @@
 
 package org.akraievoy.base.proxies;
 
-import com.google.common.base.Defaults;
-import com.google.common.primitives.Primitives;
+import com.google.common.base.Predicate;
+import com.google.common.base.Ticker;
+import org.akraievoy.base.Tickers;
 import org.slf4j.Logger;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReadWriteLock;
 
 public class Proxies {
+  /**
+   * How parallel join combines the results of the impls.
+   */
+  public enum Aggregation {
+    /**
+     * Parallel analog of <code>notNullTerminates</code>: first non-null result wins, the rest are cancelled.
+     */
+    FIRST_NOT_NULL,
+    /**
+     * Waits for all impls, fails on first failure, returns the result of the last impl.
+     */
+    ALL,
+    /**
+     * Returns the value equal results of the majority of impls agree upon.
+     */
+    QUORUM
+  }
+
   /**
    * @param interf interface class to create proxy for
    * @return a proxy that silently ignores all method calls
    */
   @SuppressWarnings("unchecked")
   public static <E> E noop(Class<E> interf) {
-    return (E) Proxy.newProxyInstance(interf.getClassLoader(), new Class[]{interf}, new InvocationHandler() {
+    final E generated = ProxyGenerator.noop(interf);
+    if (generated != null) {
+      return generated;
+    }
+
+    final DispatchPlans plans = new DispatchPlans(new Object[0]);
+    return (E) Proxy.newProxyInstance(interf.getClassLoader(), new Class<?>[]{interf}, new InvocationHandler() {
       public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        Class<?> resultType = method.getReturnType();
-        if (Primitives.allPrimitiveTypes().contains(resultType)) {
-          return Defaults.defaultValue(resultType);
-        }
-        return null;
+        return plans.get(method).defaultValue;
       }
     });
   }
@@ -52,19 +75,61 @@ public class Proxies {
    */
   @SuppressWarnings("unchecked")
   public static <E> E join(Class<E> interf, boolean notNullTerminates, final E... impls) {
-    return (E) Proxy.newProxyInstance(interf.getClassLoader(), new Class[]{interf},
+    final E generated = ProxyGenerator.join(interf, notNullTerminates, impls);
+    if (generated != null) {
+      return generated;
+    }
+
+    return (E) Proxy.newProxyInstance(interf.getClassLoader(), new Class<?>[]{interf},
         new InvocationHandlerJoining<E>(notNullTerminates, impls));
   }
 
+  /**
+   * @param interf        interface class to create proxy for
+   * @param executor      to run the impls on, should have a thread for each impl to gain anything
+   * @param aggregation   of the results
+   * @param timeoutMillis per call, on expiry call fails with <code>UncheckedTimeoutException</code>,
+   *                      zero or less to wait for the impls without a timeout
+   * @param impls         implementations vararg
+   * @return a proxy that calls all implementations in parallel, pending calls are cancelled on return
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> E join(
+      Class<E> interf, Executor executor, Aggregation aggregation, long timeoutMillis, final E... impls
+  ) {
+    return (E) Proxy.newProxyInstance(interf.getClassLoader(), new Class<?>[]{interf},
+        new InvocationHandlerParallel<E>(executor, aggregation, timeoutMillis, impls));
+  }
+
   @SuppressWarnings("unchecked")
   public static <E> E robust(Class<E> interf, final E impl, final Logger failureLogger) {
-    return (E) Proxy.newProxyInstance(interf.getClassLoader(), new Class[]{interf}, new InvocationHandler() {
+    final E generated = ProxyGenerator.broadcast(interf, new Targets() {
+      final Object[] targets = {impl};
+
+      public Object[] getTargets() {
+        return targets;
+      }
+
+      public void onFailure(Method method, Throwable failure) {
+        failureLogger.warn(method.getName() + " failed: " + failure.getMessage());
+        if (failureLogger.isDebugEnabled()) {
+          failureLogger.debug("details: " + failure.getMessage(), failure);
+        }
+      }
+    });
+    if (generated != null) {
+      return generated;
+    }
+
+    return (E) Proxy.newProxyInstance(interf.getClassLoader(), new Class<?>[]{interf}, new InvocationHandler() {
       public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         try {
           return method.invoke(impl, args);
         } catch (Throwable thr) {
           failureLogger.warn(method.getName() + " failed: " + thr.getMessage());
-          failureLogger.debug("details: " + thr.getMessage(), thr);
+          if (failureLogger.isDebugEnabled()) {
+            failureLogger.debug("details: " + thr.getMessage(), thr);
+          }
 
           return null;
         }
@@ -72,13 +137,49 @@ public class Proxies {
     });
   }
 
+  /**
+   * Returns a robust proxy which stops calling the impl while the breaker is open,
+   * returning defaults right away, and logs failures at most once per <code>logIntervalMillis</code>.
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> E robust(
+      Class<E> interf, final E impl, final Logger failureLogger, CircuitBreaker breaker, long logIntervalMillis
+  ) {
+    final GuardedTargets targets = new CircuitBreakerTargets(impl, breaker, failureLogger, logIntervalMillis);
+    final E generated = ProxyGenerator.guarded(interf, targets);
+    if (generated != null) {
+      return generated;
+    }
+
+    return (E) Proxy.newProxyInstance(interf.getClassLoader(), new Class<?>[]{interf},
+        new InvocationHandlerGuarded(targets));
+  }
+
+  /**
+   * Returns a proxy which records calls, failures and latencies of each method into the registry.
+   */
+  public static <E> E metered(Class<E> interf, final E impl, final MeterRegistry registry) {
+    return metered(interf, impl, registry, Tickers.nano());
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <E> E metered(Class<E> interf, final E impl, final MeterRegistry registry, final Ticker ticker) {
+    return (E) Proxy.newProxyInstance(interf.getClassLoader(), new Class<?>[]{interf},
+        new InvocationHandlerMetered<E>(interf, impl, registry, ticker));
+  }
+
   @SuppressWarnings("unchecked")
   /**
    * Returns a proxy which will synchronize all interface calls with given
    * implementation.
    */
   public static <E> E synch(Class<E> interf, final E impl, final Object lockObj) {
-    return (E) Proxy.newProxyInstance(interf.getClassLoader(), new Class[]{interf}, new InvocationHandler() {
+    final E generated = ProxyGenerator.synch(interf, impl, lockObj);
+    if (generated != null) {
+      return generated;
+    }
+
+    return (E) Proxy.newProxyInstance(interf.getClassLoader(), new Class<?>[]{interf}, new InvocationHandler() {
       public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
         synchronized (lockObj) {
           return method.invoke(impl, args);
@@ -87,28 +188,61 @@ public class Proxies {
     });
   }
 
+  /**
+   * Returns a proxy which runs {@link ReadOnly} methods under the read lock, all the rest under the write lock.
+   */
+  public static <E> E synchReadWrite(Class<E> interf, final E impl, final ReadWriteLock lock) {
+    return synchReadWrite(interf, impl, lock, new Predicate<Method>() {
+      public boolean apply(Method method) {
+        return method.isAnnotationPresent(ReadOnly.class);
+      }
+    });
+  }
+
+  /**
+   * Returns a proxy which runs reader methods under the read lock, all the rest under the write lock.
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> E synchReadWrite(Class<E> interf, final E impl, final ReadWriteLock lock, Predicate<Method> readers) {
+    return (E) Proxy.newProxyInstance(interf.getClassLoader(), new Class<?>[]{interf},
+        new InvocationHandlerReadWrite<E>(impl, lock, readers));
+  }
+
+  /**
+   * Returns a proxy which locks one of the stripes chosen by the hash of the key argument,
+   * methods with less arguments than <code>keyIndex + 1</code> lock all of the stripes.
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> E synchStriped(Class<E> interf, final E impl, int stripes, int keyIndex) {
+    return (E) Proxy.newProxyInstance(interf.getClassLoader(), new Class<?>[]{interf},
+        new InvocationHandlerStriped<E>(impl, stripes, keyIndex));
+  }
+
   protected static class InvocationHandlerJoining<E> implements InvocationHandler {
     protected final E[] impls;
     protected final boolean terminateOnNotNull;
+    final DispatchPlans plans;
 
+    @SuppressWarnings({"unchecked"})
     public InvocationHandlerJoining(final boolean notNullTerminates, final E... impls) {
       this.impls = impls;
       terminateOnNotNull = notNullTerminates;
+      plans = new DispatchPlans(impls);
     }
 
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-      final Class<?> retType = method.getReturnType();
-      Object res = Primitives.allPrimitiveTypes().contains(retType) ? Defaults.defaultValue(retType) : null;
+      final DispatchPlans.Plan plan = plans.get(method);
+      final Method[] targets = plan.targets;
+      Object res = plan.defaultValue;
 
-      for (E impl : impls) {
-        res = method.invoke(impl, args);
+      for (int i = 0; i < targets.length; i++) {
+        res = targets[i].invoke(impls[i], args);
 
         if (res != null && terminateOnNotNull) {
           return res;
         }
       }
 
-
       return res;
     }
   }
@@ -0,0 +1,435 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import com.google.common.collect.MapMaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.akraievoy.base.proxies.ClassFile.*;
+
+/**
+ * Emits proxy classes which invoke the targets directly via <code>invokeinterface</code>,
+ * without <code>Method.invoke()</code>, argument arrays or boxing on the call path.
+ * <p/>
+ * All proxies share the single shape: a loop over the targets, which are either fixed
+ * or fetched from {@link Targets} on each call, optionally terminating on first non-null result,
+ * optionally reporting failures (and successes) of each target, optionally holding a monitor for the whole call.
+ * <p/>
+ * Same as with {@link java.lang.reflect.Proxy}, <code>equals</code>, <code>hashCode</code> and <code>toString</code>
+ * are dispatched to the targets like the methods of the interface.
+ * <p/>
+ * Methods return <code>null</code> whenever the interface can't be proxied this way
+ * (non-public interface, too many arguments, security restrictions), or generation is turned off
+ * with the <code>org.akraievoy.base.proxies.generate=false</code> system property:
+ * callers then fall back to the reflective proxies.
+ */
+public class ProxyGenerator {
+  private static final Logger log = LoggerFactory.getLogger(ProxyGenerator.class);
+
+  public static final String PROPERTY_GENERATE = "org.akraievoy.base.proxies.generate";
+
+  static final int SHAPE_TARGETS = 1;
+  static final int SHAPE_CATCH = 2;
+  static final int SHAPE_TERMINATE = 4;
+  static final int SHAPE_LOCK = 8;
+  static final int SHAPE_SUCCESS = 16;
+  static final int SHAPES = 32;
+
+  static final String PACKAGE = "org.akraievoy.base.proxies.generated.";
+  static final String TARGETS = internalName(Targets.class);
+  static final String GUARDED_TARGETS = internalName(GuardedTargets.class);
+  static final String OBJECT = "java/lang/Object";
+  static final String METHODS = "[Ljava/lang/reflect/Method;";
+  static final String CONSTRUCTOR = "([Ljava/lang/Object;L" + TARGETS + ";Ljava/lang/Object;" + METHODS + ")V";
+
+  static final Object[] NONE = new Object[0];
+  static final Object UNSUPPORTED = new Object();
+
+  static final boolean enabled = !"false".equalsIgnoreCase(System.getProperty(PROPERTY_GENERATE));
+  static final AtomicInteger classCount = new AtomicInteger();
+  static final ConcurrentMap<Class<?>, AtomicReferenceArray<Object>> constructors =
+      new MapMaker().weakKeys().softValues().makeMap();
+
+  protected ProxyGenerator() {
+    //	sealed
+  }
+
+  public static <E> E noop(Class<E> interf) {
+    return create(interf, 0, NONE, null, null);
+  }
+
+  @SuppressWarnings({"unchecked"})
+  public static <E> E join(Class<E> interf, boolean notNullTerminates, final E... impls) {
+    return create(interf, notNullTerminates ? SHAPE_TERMINATE : 0, impls, null, null);
+  }
+
+  public static <E> E synch(Class<E> interf, final E impl, final Object lockObj) {
+    return create(interf, SHAPE_LOCK, new Object[]{impl}, null, lockObj);
+  }
+
+  /**
+   * @param interf  interface class to create proxy for
+   * @param targets provides the targets on each call and logs their failures
+   * @return proxy invoking all current targets, returning the result of the last successful one
+   */
+  public static <E> E broadcast(Class<E> interf, final Targets targets) {
+    return create(interf, SHAPE_TARGETS | SHAPE_CATCH, null, targets, null);
+  }
+
+  /**
+   * @param interf  interface class to create proxy for
+   * @param targets provides the targets on each call, accounts for their successes and failures
+   * @return proxy invoking all current targets, returning the result of the last successful one
+   */
+  public static <E> E guarded(Class<E> interf, final GuardedTargets targets) {
+    return create(interf, SHAPE_TARGETS | SHAPE_CATCH | SHAPE_SUCCESS, null, targets, null);
+  }
+
+  static <E> E create(Class<E> interf, int shape, Object[] targets, Targets source, Object lock) {
+    final Generated generated = generated(interf, shape);
+    if (generated == null) {
+      return null;
+    }
+
+    try {
+      return interf.cast(generated.constructor.newInstance(targets, source, lock, generated.methods));
+    } catch (Exception e) {
+      log.warn("failed to instantiate proxy for {}: {}", interf.getName(), String.valueOf(e));
+      return null;
+    }
+  }
+
+  static Generated generated(final Class<?> interf, final int shape) {
+    if (!enabled) {
+      return null;
+    }
+
+    AtomicReferenceArray<Object> shapes = constructors.get(interf);
+    if (shapes == null) {
+      final AtomicReferenceArray<Object> created = new AtomicReferenceArray<Object>(SHAPES);
+      shapes = constructors.putIfAbsent(interf, created);
+      if (shapes == null) {
+        shapes = created;
+      }
+    }
+
+    Object generated = shapes.get(shape);
+    if (generated == null) {
+      //  racing threads may both generate, only one class gets published
+      generated = generate(interf, shape);
+      if (!shapes.compareAndSet(shape, null, generated)) {
+        generated = shapes.get(shape);
+      }
+    }
+
+    return generated == UNSUPPORTED ? null : (Generated) generated;
+  }
+
+  static Object generate(final Class<?> interf, final int shape) {
+    if (!interf.isInterface() || !Modifier.isPublic(interf.getModifiers())) {
+      return UNSUPPORTED;
+    }
+
+    final String name =
+        PACKAGE + interf.getName().replace('.', '_').replace('$', '_') + "$" + shape + "$" + classCount.incrementAndGet();
+    try {
+      final Method[] methods = proxiedMethods(interf);
+      final byte[] bytes = emit(interf, shape, name.replace('.', '/'), methods);
+      if (bytes == null) {
+        return UNSUPPORTED;
+      }
+
+      final Class<?> generated = new ProxyClassLoader(interf.getClassLoader()).define(name, bytes);
+      return new Generated(generated.getConstructor(Object[].class, Targets.class, Object.class, Method[].class), methods);
+    } catch (Throwable t) {
+      log.debug("failed to generate proxy for " + interf.getName() + ": " + t, t);
+      return UNSUPPORTED;
+    }
+  }
+
+  /**
+   * @return methods of the interface, followed by those of Object's methods the interface doesn't redeclare
+   */
+  static Method[] proxiedMethods(final Class<?> interf) throws NoSuchMethodException {
+    final List<Method> methods = new ArrayList<Method>();
+    final Set<String> signatures = new HashSet<String>();
+    for (Method method : interf.getMethods()) {
+      if (!Modifier.isStatic(method.getModifiers()) && signatures.add(signature(method))) {
+        methods.add(method);
+      }
+    }
+
+    final Method[] objectMethods = {
+        Object.class.getMethod("equals", Object.class),
+        Object.class.getMethod("hashCode"),
+        Object.class.getMethod("toString")
+    };
+    for (Method method : objectMethods) {
+      if (signatures.add(signature(method))) {
+        methods.add(method);
+      }
+    }
+
+    return methods.toArray(new Method[methods.size()]);
+  }
+
+  static String signature(final Method method) {
+    return method.getName() + descriptor(method.getParameterTypes(), method.getReturnType());
+  }
+
+  static byte[] emit(final Class<?> interf, final int shape, final String name, final Method[] methods) throws IOException {
+    if (methods.length > Short.MAX_VALUE) {
+      return null;
+    }
+
+    final ClassFile cf = new ClassFile();
+
+    cf.field(ACC_PRIVATE | ACC_FINAL, "targets", "[Ljava/lang/Object;");
+    cf.field(ACC_PRIVATE | ACC_FINAL, "source", "L" + TARGETS + ";");
+    cf.field(ACC_PRIVATE | ACC_FINAL, "lock", "Ljava/lang/Object;");
+    cf.field(ACC_PRIVATE | ACC_FINAL, "methods", METHODS);
+
+    final Code init = new Code(2, 5);
+    init.op(OP_ALOAD, 0).op2(OP_INVOKESPECIAL, cf.methodRef(OBJECT, "<init>", "()V"));
+    init.op(OP_ALOAD, 0).op(OP_ALOAD, 1).op2(OP_PUTFIELD, cf.fieldRef(name, "targets", "[Ljava/lang/Object;"));
+    init.op(OP_ALOAD, 0).op(OP_ALOAD, 2).op2(OP_PUTFIELD, cf.fieldRef(name, "source", "L" + TARGETS + ";"));
+    init.op(OP_ALOAD, 0).op(OP_ALOAD, 3).op2(OP_PUTFIELD, cf.fieldRef(name, "lock", "Ljava/lang/Object;"));
+    init.op(OP_ALOAD, 0).op(OP_ALOAD, 4).op2(OP_PUTFIELD, cf.fieldRef(name, "methods", METHODS));
+    init.op(OP_RETURN);
+    cf.method(ACC_PUBLIC, "<init>", CONSTRUCTOR, init);
+
+    for (int methodIndex = 0; methodIndex < methods.length; methodIndex++) {
+      final Method method = methods[methodIndex];
+      final String descriptor = descriptor(method.getParameterTypes(), method.getReturnType());
+
+      final Code code = emitMethod(cf, interf, shape, name, method, methodIndex, descriptor);
+      if (code == null) {
+        return null;
+      }
+      cf.method(ACC_PUBLIC, method.getName(), descriptor, code);
+    }
+
+    return cf.toByteArray(name, OBJECT, internalName(interf));
+  }
+
+  static Code emitMethod(
+      final ClassFile cf, final Class<?> interf, final int shape, final String name,
+      final Method method, final int methodIndex, final String descriptor
+  ) throws IOException {
+    final Class<?>[] params = method.getParameterTypes();
+    final Class<?> ret = method.getReturnType();
+
+    int paramSlots = 0;
+    for (Class<?> param : params) {
+      paramSlots += slots(param);
+    }
+
+    final int localArray = 1 + paramSlots;
+    final int localIndex = localArray + 1;
+    final int localResult = localIndex + 1;
+    final int localFailure = localResult + 2;
+    final int localLock = localFailure + 1;
+    final int localRethrown = localLock + 1;
+    if (localRethrown > 255) {
+      return null;
+    }
+
+    final Code code = new Code(paramSlots + 4, localRethrown + 1);
+
+    int lockStart = -1;
+    if ((shape & SHAPE_LOCK) != 0) {
+      code.op(OP_ALOAD, 0).op2(OP_GETFIELD, cf.fieldRef(name, "lock", "Ljava/lang/Object;"));
+      code.op(OP_DUP).op(OP_ASTORE, localLock).op(OP_MONITORENTER);
+      lockStart = code.pc();
+    }
+
+    code.op(OP_ALOAD, 0);
+    if ((shape & SHAPE_TARGETS) != 0) {
+      code.op2(OP_GETFIELD, cf.fieldRef(name, "source", "L" + TARGETS + ";"));
+      code.invokeInterface(cf.interfaceMethodRef(TARGETS, "getTargets", "()[Ljava/lang/Object;"), 0);
+    } else {
+      code.op2(OP_GETFIELD, cf.fieldRef(name, "targets", "[Ljava/lang/Object;"));
+    }
+    code.op(OP_ASTORE, localArray);
+
+    if (ret != Void.TYPE) {
+      code.op(defaultOpcode(ret)).op(typed(OP_ISTORE, ret), localResult);
+    }
+    code.op(OP_ICONST_0).op(OP_ISTORE, localIndex);
+
+    final int loop = code.pc();
+    code.op(OP_ILOAD, localIndex).op(OP_ALOAD, localArray).op(OP_ARRAYLENGTH);
+    final int exitJump = code.jump(OP_IF_ICMPGE);
+
+    final boolean objectMethod = method.getDeclaringClass() == Object.class;
+    final int tryStart = code.pc();
+    code.op(OP_ALOAD, localArray).op(OP_ILOAD, localIndex).op(OP_AALOAD);
+    if (!objectMethod) {
+      code.op2(OP_CHECKCAST, cf.classRef(internalName(interf)));
+    }
+    int slot = 1;
+    for (Class<?> param : params) {
+      code.op(typed(OP_ILOAD, param), slot);
+      slot += slots(param);
+    }
+    if (objectMethod) {
+      code.op2(OP_INVOKEVIRTUAL, cf.methodRef(OBJECT, method.getName(), descriptor));
+    } else {
+      code.invokeInterface(
+          cf.interfaceMethodRef(internalName(interf), method.getName(), descriptor), paramSlots
+      );
+    }
+
+    int terminateJump = -1;
+    if (ret != Void.TYPE) {
+      code.op(typed(OP_ISTORE, ret), localResult);
+    }
+    if ((shape & SHAPE_SUCCESS) != 0) {
+      code.op(OP_ALOAD, 0).op2(OP_GETFIELD, cf.fieldRef(name, "source", "L" + TARGETS + ";"));
+      code.op2(OP_CHECKCAST, cf.classRef(GUARDED_TARGETS));
+      code.invokeInterface(cf.interfaceMethodRef(GUARDED_TARGETS, "onSuccess", "()V"), 0);
+    }
+    if (ret != Void.TYPE && (shape & SHAPE_TERMINATE) != 0) {
+      if (ret.isPrimitive()) {
+        //  primitive results are never null, as boxed by reflective proxies
+        terminateJump = code.jump(OP_GOTO);
+      } else {
+        code.op(OP_ALOAD, localResult);
+        terminateJump = code.jump(OP_IFNONNULL);
+      }
+    }
+    final int tryEnd = code.pc();
+
+    if ((shape & SHAPE_CATCH) != 0) {
+      final int skipHandler = code.jump(OP_GOTO);
+      final int handler = code.pc();
+      code.op(OP_ASTORE, localFailure);
+      code.op(OP_ALOAD, 0).op2(OP_GETFIELD, cf.fieldRef(name, "source", "L" + TARGETS + ";"));
+      code.op(OP_ALOAD, 0).op2(OP_GETFIELD, cf.fieldRef(name, "methods", METHODS));
+      if (methodIndex <= Byte.MAX_VALUE) {
+        code.op(OP_BIPUSH, methodIndex);
+      } else {
+        code.op2(OP_SIPUSH, methodIndex);
+      }
+      code.op(OP_AALOAD).op(OP_ALOAD, localFailure);
+      code.invokeInterface(
+          cf.interfaceMethodRef(TARGETS, "onFailure", "(Ljava/lang/reflect/Method;Ljava/lang/Throwable;)V"), 2
+      );
+      code.handler(tryStart, tryEnd, handler, cf.classRef("java/lang/Throwable"));
+      code.patch(skipHandler, code.pc());
+    }
+
+    code.iinc(localIndex, 1);
+    code.jumpTo(OP_GOTO, loop);
+
+    final int exit = code.pc();
+    code.patch(exitJump, exit);
+    if (terminateJump >= 0) {
+      code.patch(terminateJump, exit);
+    }
+
+    if (lockStart >= 0) {
+      code.op(OP_ALOAD, localLock).op(OP_MONITOREXIT);
+    }
+    if (ret == Void.TYPE) {
+      code.op(OP_RETURN);
+    } else {
+      code.op(typed(OP_ILOAD, ret), localResult).op(typed(OP_IRETURN, ret));
+    }
+
+    if (lockStart >= 0) {
+      final int handler = code.pc();
+      code.op(OP_ASTORE, localRethrown).op(OP_ALOAD, localLock).op(OP_MONITOREXIT);
+      code.op(OP_ALOAD, localRethrown).op(OP_ATHROW);
+      code.handler(lockStart, exit, handler, 0);
+    }
+
+    return code;
+  }
+
+  /**
+   * Constructor of the generated class, with the methods its failures are reported for.
+   */
+  static class Generated {
+    final Constructor<?> constructor;
+    final Method[] methods;
+
+    Generated(final Constructor<?> constructor, final Method[] methods) {
+      this.constructor = constructor;
+      this.methods = methods;
+    }
+  }
+
+  static int defaultOpcode(final Class<?> type) {
+    if (type == Long.TYPE) {
+      return OP_LCONST_0;
+    } else if (type == Float.TYPE) {
+      return OP_FCONST_0;
+    } else if (type == Double.TYPE) {
+      return OP_DCONST_0;
+    } else if (type.isPrimitive()) {
+      return OP_ICONST_0;
+    }
+
+    return OP_ACONST_NULL;
+  }
+
+  /**
+   * Resolves the library classes against the loader of the library itself,
+   * everything else against the loader of the proxied interface.
+   */
+  static class ProxyClassLoader extends ClassLoader {
+    static final ClassLoader library = ProxyGenerator.class.getClassLoader();
+
+    ProxyClassLoader(final ClassLoader parent) {
+      super(parent);
+    }
+
+    @Override
+    protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      final Class<?> loaded = findLoadedClass(name);
+      if (loaded != null) {
+        return loaded;
+      }
+
+      if (library != null && name.startsWith("org.akraievoy.base.")) {
+        return library.loadClass(name);
+      }
+
+      return super.loadClass(name, resolve);
+    }
+
+    Class<?> define(final String name, final byte[] bytes) {
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+}
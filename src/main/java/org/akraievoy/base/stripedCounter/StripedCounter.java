@@ -0,0 +1,65 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.stripedCounter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter for hot paths: each thread adds to one of several cells, reads sum the cells up.
+ * <p/>
+ * Updates from different threads mostly touch different cache lines, so they don't contend,
+ * the price is that {@link #sum()} is not an atomic snapshot under concurrent updates.
+ */
+public class StripedCounter {
+  //  longs per cell, so that neighbouring cells never share a cache line
+  static final int SPACING = 16;
+
+  protected final AtomicLongArray cells;
+  protected final int mask;
+
+  public StripedCounter() {
+    int stripes = 1;
+    while (stripes < Runtime.getRuntime().availableProcessors() * 2) {
+      stripes <<= 1;
+    }
+
+    cells = new AtomicLongArray(stripes * SPACING);
+    mask = stripes - 1;
+  }
+
+  public void increment() {
+    add(1);
+  }
+
+  public void add(final long delta) {
+    cells.addAndGet(((int) Thread.currentThread().getId() & mask) * SPACING, delta);
+  }
+
+  public long sum() {
+    long sum = 0;
+    for (int stripe = 0; stripe <= mask; stripe++) {
+      sum += cells.get(stripe * SPACING);
+    }
+    return sum;
+  }
+
+  public String toString() {
+    return String.valueOf(sum());
+  }
+}
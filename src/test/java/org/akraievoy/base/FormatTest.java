@@ -0,0 +1,98 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+
+public class FormatTest extends TestCase {
+  public void testBuffersResumeFromReturnedIndex() {
+    final long[] longs = {1, -22, 333, Long.MIN_VALUE, 0};
+    final CharBuffer buffer = CharBuffer.allocate(24);
+    final StringBuilder text = new StringBuilder();
+
+    int from = 0;
+    while (from < longs.length) {
+      from = Format.format(buffer, longs, from, ", ");
+      buffer.flip();
+      text.append(buffer);
+      buffer.clear();
+    }
+
+    assertEquals(Format.format(new StringBuilder(), longs, ", ").toString(), text.toString());
+  }
+
+  public void testBuffersTooSmallForAnElementOverflow() {
+    try {
+      Format.format(CharBuffer.allocate(3), new long[]{1234}, 0, ",");
+      fail("BufferOverflowException expected");
+    } catch (BufferOverflowException e) {
+      //  expected
+    }
+
+    final ByteBuffer bytes = ByteBuffer.allocate(4);
+    assertEquals(1, Format.format(bytes, new int[]{12, 345}, 0, ", "));
+    bytes.clear();
+    try {
+      Format.format(bytes, new int[]{12, 345}, 1, ", ");
+      fail("BufferOverflowException expected");
+    } catch (BufferOverflowException e) {
+      //  expected
+    }
+  }
+
+  public void testSeparatorsLongerThanChunk() throws IOException {
+    final char[] separatorChars = new char[20000];
+    Arrays.fill(separatorChars, '-');
+    final String separator = new String(separatorChars);
+    final long[] longs = {1, 2, 3};
+    final String expected = Format.format(new StringBuilder(), longs, separator).toString();
+
+    final StringWriter writer = new StringWriter();
+    Format.format(writer, longs, separator);
+    assertEquals(expected, writer.toString());
+
+    final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    Format.format(stream, longs, separator);
+    assertEquals(expected, stream.toString("US-ASCII"));
+  }
+
+  public void testWritersMatchOtherAppendables() throws IOException {
+    final long[] longs = {Long.MIN_VALUE, -1, 0, 42, Long.MAX_VALUE};
+    final Collection<Long> collection = Arrays.asList(-7L, 0L, 7L);
+
+    final Appendable appendable = new StringBuilder();
+    assertEquals(
+        Format.format(appendable, longs, "; ").toString(),
+        Format.format(new StringWriter(), longs, "; ").toString()
+    );
+    assertEquals(
+        Format.format(new StringBuilder(), collection, ", ").toString(),
+        Format.format(new StringWriter(), collection, ", ").toString()
+    );
+  }
+}
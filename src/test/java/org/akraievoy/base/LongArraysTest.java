@@ -0,0 +1,77 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+public class LongArraysTest extends TestCase {
+  public void testRemove() {
+    final long[] arr = {1, 2, 1, 3, 1};
+    assertTrue(Arrays.equals(new long[]{2, 3}, LongArrays.remove(arr, 1)));
+    assertSame(arr, LongArrays.remove(arr, 4));
+    assertNull(LongArrays.remove(null, 1));
+  }
+
+  public void testRemoveWithinRange() {
+    final long[] arr = {1, 2, 1, 3, 1};
+    assertTrue(Arrays.equals(new long[]{1, 2, 3, 1}, LongArrays.remove(arr, 1, 4, 1)));
+    assertSame(arr, LongArrays.remove(arr, 1, 2, 1));
+    assertTrue(Arrays.equals(new long[]{2, 1, 3, 1}, LongArrays.remove(arr, 0, 1, 1)));
+  }
+
+  public void testIndexOfWithinRange() {
+    final long[] arr = {5, 6, 5, 7};
+    assertEquals(0, LongArrays.indexOf(arr, 5));
+    assertEquals(2, LongArrays.indexOf(arr, 1, 4, 5));
+    assertEquals(-1, LongArrays.indexOf(arr, 3, 4, 5));
+    assertFalse(LongArrays.contains(arr, 8));
+  }
+
+  public void testSortedOperations() {
+    final long[] sorted = {1, 1, 2, 4, 4, 4, 9};
+    assertTrue(LongArrays.sortedContains(sorted, 9));
+    assertFalse(LongArrays.sortedContains(sorted, 3));
+    assertFalse(LongArrays.sortedContains(sorted, 0, 6, 9));
+
+    final long[] unique = LongArrays.dedup(sorted);
+    assertTrue(Arrays.equals(new long[]{1, 2, 4, 9}, unique));
+    assertSame(unique, LongArrays.dedup(unique));
+
+    final long[] other = {0, 2, 3, 9};
+    assertTrue(Arrays.equals(new long[]{0, 1, 2, 3, 4, 9}, LongArrays.union(unique, other)));
+    assertTrue(Arrays.equals(new long[]{2, 9}, LongArrays.intersection(unique, other)));
+    assertTrue(Arrays.equals(new long[]{2}, LongArrays.intersection(unique, 0, 3, other, 0, 4)));
+  }
+
+  public void testFilterInPlace() {
+    final long[] arr = {1, 2, 3, 4, 5, 6};
+    final int end = LongArrays.filter(arr, 1, 5, new LongArrays.Filter() {
+      public boolean apply(long value) {
+        return value % 2 == 0;
+      }
+    });
+
+    assertEquals(3, end);
+    assertEquals(2, arr[1]);
+    assertEquals(4, arr[2]);
+    assertEquals(1, arr[0]);
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base;
+
+import junit.framework.TestCase;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Random;
+
+public class NumberTextTest extends TestCase {
+  public void testHalfwayTiesRoundToEven() {
+    assertParsesAsJdk(
+        "9007199254740993", "9007199254740995", "18014398509481986", "18014398509481990",
+        "4503599627370496.5", "4503599627370497.5", "1.00000000000000011102230246251565404236316680908203125",
+        "0.5", "2.5e-1", "1e23", "8.589973e9"
+    );
+  }
+
+  public void testSubnormals() {
+    assertParsesAsJdk(
+        "4.9e-324", "5e-324", "2.4703282292062327e-324", "2.4703282292062328e-324",
+        "2.2250738585072011e-308", "2.2250738585072012e-308", "2.2250738585072014e-308",
+        "1e-320", "-1.5e-315", "4.9406564584124654e-324", "3e-324"
+    );
+  }
+
+  public void testLongMantissasFallBack() {
+    assertParsesAsJdk(
+        "1234567890123456789", "12345678901234567890", "9223372036854775807", "18446744073709551615",
+        "99999999999999999999e-20", "0.10000000000000000555", "0.1000000000000000055511151231257827",
+        "1.2345678901234567890123e10", "123456789012345678901234567890e-99999",
+        "100000000000000000000000000000000000001", "7.2057594037927933e16"
+    );
+  }
+
+  public void testExponentOverflowAndUnderflow() {
+    assertParsesAsJdk(
+        "1e308", "1e309", "-1e309", "1.7976931348623157e308", "1.7976931348623158e308", "1.7976931348623159e308",
+        "1e-400", "-1e-400", "1e99999999999", "1e-99999999999", "0e99999", "-0.0", "0.001e311", "1000e-326"
+    );
+  }
+
+  public void testRandomValuesParseAsJdk() {
+    final Random random = new Random(42);
+    for (int i = 0; i < 20000; i++) {
+      assertParsesAsJdk(Double.toString(Double.longBitsToDouble(random.nextLong())));
+
+      final long mantissa = random.nextLong() >>> random.nextInt(64);
+      assertParsesAsJdk(mantissa + "e" + (random.nextInt(680) - 360));
+    }
+  }
+
+  public void testDocumentedRejections() {
+    final String[] rejected = {
+        " 1", "1 ", "\t1", "1\n", "1d", "1D", "1f", "1F", "0x1p3", "1e", "1e+", "1e-", ".", "-", "+", "e5",
+        "1..2", "1.2.3", "--1", "NaNa", "Inf", "-Infinityy", "1e5.0"
+    };
+    for (String text : rejected) {
+      assertEquals(text, -42.0, NumberText.parseDouble(text, 0, text.length(), -42.0));
+    }
+
+    //  still accepted by both
+    assertParsesAsJdk(".5", "5.", "-.5e1", "+1E+2", "NaN", "-Infinity", "007");
+  }
+
+  public void testFixedSpecialValues() {
+    assertFormatsAsDecimalFormat(0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY);
+  }
+
+  public void testFixedRoundsUpAcrossPowersOfTen() {
+    assertFormatsAsDecimalFormat(
+        9.995, 9.9951, 99.5, 999.9999999999, -9.995, -0.9999999999, 0.99999, 9999999999.9999999, 0.0000000005
+    );
+  }
+
+  public void testFixedHalfEvenTies() {
+    assertFormatsAsDecimalFormat(0.5, 1.5, 2.5, -2.5, 0.125, 0.375, 1.0625, 2.675, 1.005, 0.045);
+  }
+
+  public void testFixedLargeMagnitudes() {
+    assertFormatsAsDecimalFormat(
+        1e15, 1e17, 123456789.123456789, 8589934591.75, 1.2345678912345e20, (double) Long.MAX_VALUE,
+        -9.2233720368547758E18, 1e300, Double.MAX_VALUE, -Double.MAX_VALUE, Double.MIN_VALUE, Double.MIN_NORMAL
+    );
+  }
+
+  public void testFixedRandomValues() {
+    final Random random = new Random(42);
+    for (int i = 0; i < 5000; i++) {
+      assertFormatsAsDecimalFormat(
+          random.nextDouble() * Math.pow(10, random.nextInt(24) - 12) * (random.nextBoolean() ? 1 : -1),
+          random.nextInt(2000000) / 1000.0,
+          random.nextInt(2000000) / 8.0,
+          (random.nextInt(200000) * 10 + 5) / Math.pow(10, 1 + random.nextInt(10))
+      );
+    }
+  }
+
+  static void assertFormatsAsDecimalFormat(final double... values) {
+    for (int digits = 0; digits <= NumberText.MAX_FRACTION_DIGITS; digits++) {
+      final StringBuilder pattern = new StringBuilder("0");
+      for (int i = 0; i < digits; i++) {
+        pattern.append(i == 0 ? ".#" : "#");
+      }
+      final DecimalFormat reference = new DecimalFormat(pattern.toString(), new DecimalFormatSymbols(Locale.ENGLISH));
+
+      for (double value : values) {
+        final String expected = reference.format(value);
+        final String message = value + " with " + digits + " digits";
+        assertEquals(message, expected, NumberText.formatFixed(value, digits));
+        assertEquals(message, "<" + expected, NumberText.appendFixed(new StringBuilder("<"), value, digits).toString());
+
+        final char[] buffer = new char[400];
+        final int end = NumberText.appendFixed(buffer, 3, value, digits);
+        assertEquals(message, expected, new String(buffer, 3, end - 3));
+      }
+    }
+  }
+
+  static void assertParsesAsJdk(final String... texts) {
+    for (String text : texts) {
+      assertEquals(
+          text,
+          Double.doubleToRawLongBits(Double.parseDouble(text)),
+          Double.doubleToRawLongBits(NumberText.parseDouble(text, 0, text.length(), -42.0))
+      );
+    }
+  }
+}
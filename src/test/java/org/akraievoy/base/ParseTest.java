@@ -0,0 +1,123 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class ParseTest extends TestCase {
+  public void testIntOverflowAtBounds() {
+    assertEquals(Integer.MAX_VALUE, Parse.parseInt(String.valueOf(Integer.MAX_VALUE), -1));
+    assertEquals(Integer.MIN_VALUE, Parse.parseInt(String.valueOf(Integer.MIN_VALUE), -1));
+    assertEquals(-1, Parse.parseInt(String.valueOf(Integer.MAX_VALUE + 1L), -1));
+    assertEquals(-1, Parse.parseInt(String.valueOf(Integer.MIN_VALUE - 1L), -1));
+    assertEquals(-1, Parse.parseInt("99999999999", -1));
+  }
+
+  public void testLongOverflowAtBounds() {
+    assertEquals(Long.MAX_VALUE, Parse.parseLong("9223372036854775807", -1));
+    assertEquals(Long.MIN_VALUE, Parse.parseLong("-9223372036854775808", -1));
+    assertEquals(-1, Parse.parseLong("9223372036854775808", -1));
+    assertEquals(-1, Parse.parseLong("-9223372036854775809", -1));
+    assertEquals(-1, Parse.parseLong("+9223372036854775808", -1));
+    assertEquals(-1, Parse.parseLong("92233720368547758070", -1));
+  }
+
+  public void testEmptySlices() {
+    assertEquals(-1, Parse.parseInt("", -1));
+    assertEquals(-1, Parse.parseInt("123", 1, 1, -1));
+    assertEquals(-1, Parse.parseLong("123", 2, 1, -1));
+    assertEquals(-1, Parse.parseInt(null, -1));
+    assertEquals(0, Parse.ints("1,2", 1, 1, ',', -1, new int[2]));
+  }
+
+  public void testLoneSigns() {
+    assertEquals(-1, Parse.parseInt("-", -1));
+    assertEquals(-1, Parse.parseInt("+", -1));
+    assertEquals(-1, Parse.parseLong("1-", 1, 2, -1));
+    assertEquals(5, Parse.parseInt("+5", -1));
+    assertEquals(0, Parse.parseLong("-0", -1));
+  }
+
+  public void testSliceOffsets() {
+    assertEquals(-42, Parse.parseInt("ab-42cd", 2, 5, 0));
+    assertEquals(34, Parse.parseLong("12345", 2, 4, 0));
+    assertEquals(2.5, Parse.parseDouble("[2.5]", 1, 4, 0));
+
+    final long[] target = new long[2];
+    assertEquals(2, Parse.longs("x7;-8y", 1, 5, ';', 0, target));
+    assertTrue(Arrays.equals(new long[]{7, -8}, target));
+  }
+
+  public void testSeparators() {
+    final int[] target = new int[4];
+    assertEquals(4, Parse.ints("1,,x,4", 0, 6, ',', -1, target));
+    assertTrue(Arrays.equals(new int[]{1, -1, -1, 4}, target));
+
+    assertEquals(3, Parse.ints("5,6,", 0, 4, ',', -1, target));
+    assertTrue(Arrays.equals(new int[]{5, 6, -1, 4}, target));
+
+    final double[] doubles = new double[2];
+    assertEquals(3, Parse.doubles("1.5 -2e1 3", 0, 10, ' ', 0, doubles));
+    assertTrue(Arrays.equals(new double[]{1.5, -20}, doubles));
+  }
+
+  public void testRejectedInput() {
+    final String[] rejected = {" 1", "1 ", "1.0", "0x10", "1e3", "--1", "+-1", "1_000", "١"};
+    for (String text : rejected) {
+      assertEquals(text, -1, Parse.parseInt(text, -1));
+      assertEquals(text, -1, Parse.parseLong(text, -1));
+    }
+  }
+
+  public void testByteBufferMatchesCharArray() {
+    final String text = "##12,-3,,x,9223372036854775807,7##";
+    final int from = 2;
+    final int to = text.length() - 2;
+
+    final ByteBuffer bytes = ByteBuffer.wrap(text.getBytes());
+    bytes.position(from).limit(to);
+
+    final long[] fromBytes = new long[5];
+    final long[] fromChars = new long[5];
+    assertEquals(6, Parse.longs(bytes, ',', -1, fromBytes));
+    assertEquals(6, Parse.longs(text.toCharArray(), from, to, ',', -1, fromChars));
+    assertTrue(Arrays.equals(fromChars, fromBytes));
+    assertTrue(Arrays.equals(new long[]{12, -3, -1, -1, Long.MAX_VALUE}, fromBytes));
+
+    final int[] intsFromBytes = new int[6];
+    final int[] intsFromChars = new int[6];
+    assertEquals(6, Parse.ints(bytes, ',', -1, intsFromBytes));
+    assertEquals(6, Parse.ints(text.toCharArray(), from, to, ',', -1, intsFromChars));
+    assertTrue(Arrays.equals(intsFromChars, intsFromBytes));
+
+    assertEquals(from, bytes.position());
+    assertEquals(to, bytes.limit());
+  }
+
+  public void testByteBufferRejectsNonAsciiDigits() {
+    //  0xB1 is '1' with the high bit set, which is not an ASCII digit
+    final ByteBuffer bytes = ByteBuffer.wrap(new byte[]{'1', (byte) 0xB1});
+    final int[] target = new int[1];
+    assertEquals(1, Parse.ints(bytes, ',', -1, target));
+    assertEquals(-1, target[0]);
+  }
+}
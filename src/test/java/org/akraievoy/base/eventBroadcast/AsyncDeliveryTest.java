@@ -0,0 +1,131 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.eventBroadcast;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class AsyncDeliveryTest extends TestCase {
+  public static interface Events {
+    void fired(int event);
+  }
+
+  protected EventBroadcast<Events> broadcast;
+  protected List<Integer> received;
+
+  protected void setUp() throws Exception {
+    broadcast = new EventBroadcast<Events>();
+    received = Collections.synchronizedList(new ArrayList<Integer>());
+    broadcast.add(new Events() {
+      public void fired(int event) {
+        received.add(event);
+      }
+    });
+  }
+
+  public void testBlockDoesNotHangBeforeStart() {
+    final AsyncDelivery<Events> delivery =
+        new AsyncDelivery<Events>(broadcast, 1, 2, AsyncDelivery.Backpressure.BLOCK, 4);
+    final Events events = delivery.getBroadcast(Events.class);
+
+    for (int i = 0; i < 4; i++) {
+      events.fired(i);
+    }
+
+    delivery.start();
+    waitFor(2);
+    delivery.stop();
+    assertEquals(Integer.valueOf(0), received.get(0));
+    assertEquals(Integer.valueOf(1), received.get(1));
+  }
+
+  public void testBlockDoesNotHangAfterStop() throws InterruptedException {
+    final AsyncDelivery<Events> delivery =
+        new AsyncDelivery<Events>(broadcast, 1, 2, AsyncDelivery.Backpressure.BLOCK, 4);
+    final Events events = delivery.getBroadcast(Events.class);
+
+    delivery.start();
+    events.fired(0);
+    waitFor(1);
+    delivery.stop();
+    while (delivery.dispatchers[0].isRunning()) {
+      Thread.sleep(1);
+    }
+
+    for (int i = 1; i < 5; i++) {
+      events.fired(i);
+    }
+    assertEquals(1, received.size());
+  }
+
+  public void testStartIsIdempotent() {
+    final AsyncDelivery<Events> delivery =
+        new AsyncDelivery<Events>(broadcast, 2, 4, AsyncDelivery.Backpressure.BLOCK, 4);
+
+    delivery.start();
+    final Thread first = delivery.dispatchers[0].thread;
+    delivery.start();
+    assertSame(first, delivery.dispatchers[0].thread);
+
+    delivery.getBroadcast(Events.class).fired(1);
+    waitFor(1);
+    delivery.stop();
+  }
+
+  public void testQuickRestartKeepsDelivering() {
+    final AsyncDelivery<Events> delivery =
+        new AsyncDelivery<Events>(broadcast, 1, 16, AsyncDelivery.Backpressure.BLOCK, 4);
+    final Events events = delivery.getBroadcast(Events.class);
+
+    for (int round = 0; round < 20; round++) {
+      delivery.start();
+      events.fired(round);
+      delivery.stop();
+    }
+    delivery.start();
+    waitFor(20);
+    delivery.stop();
+
+    for (int round = 0; round < 20; round++) {
+      assertEquals(Integer.valueOf(round), received.get(round));
+    }
+  }
+
+  public void testCallerRunsAfterStop() {
+    final AsyncDelivery<Events> delivery =
+        new AsyncDelivery<Events>(broadcast, 1, 2, AsyncDelivery.Backpressure.CALLER_RUNS, 4);
+    delivery.start();
+    delivery.stop();
+
+    delivery.getBroadcast(Events.class).fired(7);
+    assertEquals(1, received.size());
+    assertEquals(Integer.valueOf(7), received.get(0));
+  }
+
+  protected void waitFor(final int events) {
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (received.size() < events) {
+      assertTrue("timed out waiting for " + events + " events", System.currentTimeMillis() < deadline);
+      Thread.yield();
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.expiringCache;
+
+import junit.framework.TestCase;
+import org.akraievoy.base.Tickers;
+
+import java.util.concurrent.TimeUnit;
+
+public class ExpiringCacheTest extends TestCase {
+  static final int VALID_TIME = 100;
+
+  protected Tickers.ManualTicker ticker;
+  protected int creations;
+
+  protected void setUp() throws Exception {
+    ticker = new Tickers.ManualTicker();
+    creations = 0;
+  }
+
+  protected ExpiringCache<String, String> newCache(final long createMillis) {
+    final ExpiringCache<String, String> cache = new ExpiringCache<String, String>(
+        new ExpiringCache.Creator<String, String>() {
+          public String create(String key) {
+            creations++;
+            ticker.advance(createMillis, TimeUnit.MILLISECONDS);
+            return key + creations;
+          }
+        },
+        VALID_TIME
+    );
+    cache.setTicker(ticker);
+    return cache;
+  }
+
+  public void testSlowCreateIsNotExpiredRightAway() {
+    final ExpiringCache<String, String> cache = newCache(VALID_TIME * 3);
+    cache.setSingleFlight(false);
+
+    assertEquals("a1", cache.get("a"));
+    assertEquals("a1", cache.get("a"));
+    assertEquals(1, creations);
+  }
+
+  public void testSlowSingleFlightLoadIsNotExpiredRightAway() {
+    final ExpiringCache<String, String> cache = newCache(VALID_TIME * 3);
+
+    assertEquals("a1", cache.get("a"));
+    assertEquals("a1", cache.get("a"));
+    assertEquals(1, creations);
+  }
+
+  public void testExpiresAfterValidTime() {
+    final ExpiringCache<String, String> cache = newCache(0);
+
+    assertEquals("a1", cache.get("a"));
+    ticker.advance(VALID_TIME, TimeUnit.MILLISECONDS);
+    assertEquals("a1", cache.get("a"));
+    ticker.advance(VALID_TIME + 1, TimeUnit.MILLISECONDS);
+    assertEquals("a2", cache.get("a"));
+    assertEquals(1, cache.getSize());
+  }
+
+  public void testPackEvictsExpiredEntriesBehindPromotedOnes() {
+    final ExpiringCache<String, String> cache = newCache(0);
+    cache.setMaximumSize(3);
+    cache.setEvictionPolicy(EvictionPolicies.<String>tinyLfu(3));
+
+    cache.set("x", "x");
+    ticker.advance(1, TimeUnit.MILLISECONDS);
+    //  x leaves the admission window for the main space
+    cache.set("w", "w");
+    ticker.advance(89, TimeUnit.MILLISECONDS);
+    assertEquals("x", cache.get("x"));
+    ticker.advance(5, TimeUnit.MILLISECONDS);
+    //  w is promoted behind the recently accessed x
+    cache.set("y", "y");
+    ticker.advance(55, TimeUnit.MILLISECONDS);
+
+    assertEquals(3, cache.getEstimatedSize());
+    assertEquals(2, cache.getSize());
+    assertFalse(cache.cache.containsKey("w"));
+  }
+
+  public void testNullKeysAreRejected() {
+    final ExpiringCache<String, String> cache = newCache(0);
+    try {
+      cache.get(null);
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException e) {
+      assertEquals(0, creations);
+    }
+    try {
+      cache.set(null, "a");
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException e) {
+      assertEquals(0, cache.getEstimatedSize());
+    }
+  }
+}
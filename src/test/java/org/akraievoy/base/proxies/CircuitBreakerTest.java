@@ -0,0 +1,101 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import junit.framework.TestCase;
+import org.akraievoy.base.Tickers;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+public class CircuitBreakerTest extends TestCase {
+  static final long OPEN_MILLIS = 1000;
+
+  protected Tickers.ManualTicker ticker;
+  protected CircuitBreaker breaker;
+
+  protected void setUp() throws Exception {
+    ticker = new Tickers.ManualTicker();
+    breaker = new CircuitBreaker(4, 0.5, 1, OPEN_MILLIS, ticker);
+  }
+
+  public void testLateFailureDoesNotExtendOpenPeriod() {
+    assertTrue(breaker.onFailure());
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    ticker.advance(OPEN_MILLIS * 6 / 10, TimeUnit.MILLISECONDS);
+    //  a call admitted before the breaker opened fails late
+    assertFalse(breaker.onFailure());
+
+    ticker.advance(OPEN_MILLIS / 2, TimeUnit.MILLISECONDS);
+    assertTrue(breaker.allow());
+    assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+  }
+
+  public void testProbeOutcomeClosesOrReopens() {
+    assertTrue(breaker.onFailure());
+    ticker.advance(OPEN_MILLIS, TimeUnit.MILLISECONDS);
+    assertTrue(breaker.allow());
+    assertFalse(breaker.allow());
+
+    assertTrue(breaker.onFailure());
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    ticker.advance(OPEN_MILLIS, TimeUnit.MILLISECONDS);
+    assertTrue(breaker.allow());
+    breaker.onSuccess();
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  @SuppressWarnings({"unchecked"})
+  public void testUninvokableProbeCountsAsFailure() throws Exception {
+    //  not a Callable, so the reflective invocation itself fails
+    final CircuitBreakerTargets targets = new CircuitBreakerTargets(
+        new Object(), breaker, LoggerFactory.getLogger(CircuitBreakerTest.class), 0
+    );
+    final Callable<Object> guarded = (Callable<Object>) Proxy.newProxyInstance(
+        Callable.class.getClassLoader(), new Class<?>[]{Callable.class}, new InvocationHandlerGuarded(targets)
+    );
+
+    assertNull(guarded.call());
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    ticker.advance(OPEN_MILLIS, TimeUnit.MILLISECONDS);
+    assertNull(guarded.call());
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+  }
+
+  @SuppressWarnings({"unchecked"})
+  public void testOpenBreakerShortCircuitsCalls() throws Exception {
+    final int[] calls = {0};
+    final Callable<Object> guarded = Proxies.robust(Callable.class, new Callable<Object>() {
+      public Object call() throws Exception {
+        calls[0]++;
+        throw new IllegalStateException("expected");
+      }
+    }, LoggerFactory.getLogger(CircuitBreakerTest.class), breaker, 0);
+
+    assertNull(guarded.call());
+    assertNull(guarded.call());
+    assertEquals(1, calls[0]);
+    assertEquals(1, breaker.getRejected());
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import junit.framework.TestCase;
+
+public class MeterRegistryTest extends TestCase {
+  public static interface Service {
+    String lookup(String key, int[] hints);
+  }
+
+  public static class Other {
+    public static interface Service {
+      String lookup(String key, int[] hints);
+    }
+  }
+
+  public void testSameSimpleNamesDontShareMeters() throws NoSuchMethodException {
+    final MeterRegistry registry = new MeterRegistry();
+
+    final Meter meter = registry.getMeter(Service.class, Service.class.getMethod("lookup", String.class, int[].class));
+    final Meter other = registry.getMeter(
+        Other.Service.class, Other.Service.class.getMethod("lookup", String.class, int[].class)
+    );
+
+    assertNotSame(meter, other);
+    assertSame(meter, registry.getMeter(Service.class, Service.class.getMethod("lookup", String.class, int[].class)));
+    assertEquals(
+        "org.akraievoy.base.proxies.MeterRegistryTest.Service.lookup(java.lang.String,int[])",
+        meter.snapshot().getName()
+    );
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import junit.framework.TestCase;
+import org.akraievoy.base.Tickers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class ProxiesTest extends TestCase {
+  //  a non-public JDK class, its methods can't be made accessible on JDK 9+
+  protected List<String> internal;
+
+  protected void setUp() throws Exception {
+    internal = Collections.unmodifiableList(new ArrayList<String>(Arrays.asList("a", "b")));
+  }
+
+  @SuppressWarnings({"unchecked"})
+  public void testMeteredProxiesInternalImplementation() {
+    final MeterRegistry registry = new MeterRegistry();
+    final List<String> metered = Proxies.metered(List.class, internal, registry, new Tickers.ManualTicker());
+
+    assertEquals(2, metered.size());
+    assertEquals("b", metered.get(1));
+  }
+
+  @SuppressWarnings({"unchecked"})
+  public void testSynchProxiesInternalImplementation() {
+    final List<String> synched = Proxies.synchReadWrite(List.class, internal, new ReentrantReadWriteLock());
+    assertEquals(2, synched.size());
+
+    final List<String> striped = Proxies.synchStriped(List.class, internal, 4, 0);
+    assertEquals("a", striped.get(0));
+    assertTrue(striped.contains("b"));
+  }
+
+  @SuppressWarnings({"unchecked"})
+  public void testParallelJoinProxiesInternalImplementation() {
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final List<String> joined = Proxies.join(
+          List.class, executor, Proxies.Aggregation.ALL, 5000, internal, internal
+      );
+      assertEquals(2, joined.size());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @SuppressWarnings({"unchecked"})
+  public void testParallelJoinWithoutTimeout() {
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final List<String> joined = Proxies.join(
+          List.class, executor, Proxies.Aggregation.QUORUM, 0, internal, internal
+      );
+      assertEquals("a", joined.get(0));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void testPlanFallsBackToInterfaceMethod() throws NoSuchMethodException {
+    final DispatchPlans.Plan plan = new DispatchPlans(new Object[]{internal}).get(List.class.getMethod("size"));
+    assertEquals(Integer.valueOf(2), invoke(plan));
+  }
+
+  protected Object invoke(final DispatchPlans.Plan plan) {
+    try {
+      return plan.targets[0].invoke(internal);
+    } catch (Exception e) {
+      throw new AssertionError(e);
+    }
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ Copyright 2011 Anton Kraievoy akraievoy@gmail.com
+ This file is part of org.akraievoy:base.
+
+ org.akraievoy:base is free software: you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ org.akraievoy:base is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with org.akraievoy:base. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.akraievoy.base.proxies;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProxyGeneratorTest extends TestCase {
+  public static interface Calc {
+    int add(int a, int b);
+
+    long mulLong(long a, int b);
+
+    double half(double value);
+
+    boolean positive(float value);
+
+    String name(String prefix);
+
+    void touch(List<String> log);
+
+    void fail(String message) throws IOException;
+  }
+
+  static interface Hidden {
+    String name();
+  }
+
+  static class CalcImpl implements Calc {
+    final String id;
+
+    CalcImpl(final String id) {
+      this.id = id;
+    }
+
+    public int add(int a, int b) {
+      return a + b;
+    }
+
+    public long mulLong(long a, int b) {
+      return a * b;
+    }
+
+    public double half(double value) {
+      return value / 2;
+    }
+
+    public boolean positive(float value) {
+      return value > 0;
+    }
+
+    public String name(String prefix) {
+      return prefix == null ? null : prefix + id;
+    }
+
+    public void touch(List<String> log) {
+      log.add(id);
+    }
+
+    public void fail(String message) throws IOException {
+      throw new IOException(message);
+    }
+
+    public String toString() {
+      return "calc " + id;
+    }
+  }
+
+  public void testPrimitiveArgumentsAndResults() {
+    final Calc calc = ProxyGenerator.join(Calc.class, false, new CalcImpl("a"), new CalcImpl("b"));
+    assertNotNull(calc);
+    assertFalse(Proxy.isProxyClass(calc.getClass()));
+
+    assertEquals(5, calc.add(2, 3));
+    assertEquals(Long.MAX_VALUE - 1, calc.mulLong(Long.MAX_VALUE / 2, 2));
+    assertEquals(-0.75, calc.half(-1.5), 0);
+    assertTrue(calc.positive(0.5f));
+    assertFalse(calc.positive(-0.5f));
+  }
+
+  public void testJoinReturnsLastOrFirstNotNull() {
+    final Calc all = ProxyGenerator.join(Calc.class, false, new CalcImpl("a"), new CalcImpl("b"));
+    assertEquals("xb", all.name("x"));
+
+    final Calc first = ProxyGenerator.join(Calc.class, true, new CalcImpl("a"), new CalcImpl("b"));
+    assertEquals("xa", first.name("x"));
+    assertNull(first.name(null));
+  }
+
+  public void testVoidMethodsCallEveryTarget() {
+    final Calc calc = ProxyGenerator.join(Calc.class, true, new CalcImpl("a"), new CalcImpl("b"));
+    final List<String> log = new ArrayList<String>();
+    calc.touch(log);
+    assertEquals(2, log.size());
+    assertEquals("a", log.get(0));
+    assertEquals("b", log.get(1));
+  }
+
+  public void testNoopReturnsDefaults() {
+    final Calc calc = ProxyGenerator.noop(Calc.class);
+    assertEquals(0, calc.add(2, 3));
+    assertEquals(0L, calc.mulLong(3, 4));
+    assertEquals(0.0, calc.half(3), 0);
+    assertFalse(calc.positive(1));
+    assertNull(calc.name("x"));
+  }
+
+  public void testCheckedExceptionsPropagate() {
+    final Calc calc = ProxyGenerator.join(Calc.class, false, new CalcImpl("a"));
+    try {
+      calc.fail("expected");
+      fail("IOException expected");
+    } catch (IOException e) {
+      assertEquals("expected", e.getMessage());
+    }
+  }
+
+  public void testLockIsReleasedWhenTargetThrows() throws InterruptedException {
+    final Object lock = new Object();
+    final Calc calc = ProxyGenerator.synch(Calc.class, new CalcImpl("a"), lock);
+
+    try {
+      calc.fail("expected");
+      fail("IOException expected");
+    } catch (IOException e) {
+      assertFalse(Thread.holdsLock(lock));
+    }
+
+    final boolean[] acquired = {false};
+    final Thread other = new Thread() {
+      public void run() {
+        synchronized (lock) {
+          acquired[0] = true;
+        }
+      }
+    };
+    other.start();
+    other.join(5000);
+    assertTrue(acquired[0]);
+  }
+
+  public void testBroadcastReportsFailuresAndGoesOn() {
+    final List<Method> failed = new ArrayList<Method>();
+    final Object[] listeners = {new CalcImpl("a"), new CalcImpl("b")};
+    final Calc calc = ProxyGenerator.broadcast(Calc.class, new Targets() {
+      public Object[] getTargets() {
+        return listeners;
+      }
+
+      public void onFailure(Method method, Throwable failure) {
+        failed.add(method);
+      }
+    });
+
+    try {
+      calc.fail("swallowed");
+    } catch (IOException e) {
+      fail("failures should be reported to targets, not thrown");
+    }
+    assertEquals(2, failed.size());
+    assertEquals("fail", failed.get(0).getName());
+    assertEquals(Calc.class, failed.get(0).getDeclaringClass());
+  }
+
+  public void testObjectMethodsAreDispatched() {
+    final CalcImpl impl = new CalcImpl("a");
+    final Calc calc = ProxyGenerator.synch(Calc.class, impl, new Object());
+    assertEquals("calc a", calc.toString());
+    assertEquals(impl.hashCode(), calc.hashCode());
+    assertTrue(calc.equals(impl));
+
+    final Calc noop = ProxyGenerator.noop(Calc.class);
+    assertNull(noop.toString());
+    assertEquals(0, noop.hashCode());
+    assertFalse(noop.equals(noop));
+  }
+
+  public void testNonPublicInterfaceFallsBackToReflection() {
+    final Hidden impl = new Hidden() {
+      public String name() {
+        return "hidden";
+      }
+    };
+    assertNull(ProxyGenerator.join(Hidden.class, false, impl));
+
+    final Hidden joined = Proxies.join(Hidden.class, false, impl);
+    assertTrue(Proxy.isProxyClass(joined.getClass()));
+    assertEquals("hidden", joined.name());
+
+    final Hidden synched = Proxies.synch(Hidden.class, impl, new Object());
+    assertTrue(Proxy.isProxyClass(synched.getClass()));
+    assertEquals("hidden", synched.name());
+
+    assertNull(Proxies.noop(Hidden.class).name());
+  }
+}